@@ -33,6 +33,7 @@ dependencies {
     implementation("com.fasterxml.jackson.core:jackson-databind:2.16.1")
     implementation("dev.failsafe:failsafe:3.3.1")
     implementation(kotlin("stdlib-jdk8"))
+    testImplementation("junit:junit:4.13.2")
 
     intellijPlatform {
         intellijIdea("2026.1")
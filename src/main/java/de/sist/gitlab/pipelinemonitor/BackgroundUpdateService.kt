@@ -1,57 +1,74 @@
 package de.sist.gitlab.pipelinemonitor
 
-import com.google.common.base.Stopwatch
+import com.intellij.ide.PowerSaveMode
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationActivationListener
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.diagnostic.Logger
-import com.intellij.openapi.progress.ProgressIndicator
-import com.intellij.openapi.progress.ProgressManager
-import com.intellij.openapi.progress.Task
-import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator
 import com.intellij.openapi.project.Project
-import com.intellij.util.concurrency.AppExecutorUtil
+import com.intellij.openapi.wm.IdeFrame
+import com.intellij.openapi.wm.ToolWindowManager
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener
+import com.intellij.platform.ide.progress.withBackgroundProgress
 import de.sist.gitlab.pipelinemonitor.config.ConfigChangedListener
 import de.sist.gitlab.pipelinemonitor.config.ConfigProvider
+import de.sist.gitlab.pipelinemonitor.config.Mapping
 import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp
 import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigProject
+import de.sist.gitlab.pipelinemonitor.git.BranchCheckedOutListener
 import de.sist.gitlab.pipelinemonitor.git.GitInitListener
 import de.sist.gitlab.pipelinemonitor.git.GitService
 import de.sist.gitlab.pipelinemonitor.gitlab.GitlabService
 import de.sist.gitlab.pipelinemonitor.notifier.NotifierService
 import dev.failsafe.FailsafeException
+import git4idea.repo.GitRepository
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.future.await
+import kotlinx.coroutines.launch
 import java.io.IOException
-import java.util.concurrent.ScheduledFuture
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
 import java.util.concurrent.TimeUnit
 
 @Service(Service.Level.PROJECT)
-class BackgroundUpdateService(private val project: Project) {
+class BackgroundUpdateService(override val project: Project, private val coroutineScope: CoroutineScope) : PollingBudget.Poller, Disposable {
     private val gitService: GitService
     private val notifierService: NotifierService
 
 
-    @get:Synchronized
+    //Read without locking by the polling budget
+    @Volatile
     var isActive: Boolean = false
         private set
-    private var isRunning = false
-    private val backgroundTask: Runnable
-    private var scheduledFuture: ScheduledFuture<*>? = null
+
+    //True while the scheduled refreshes are paused because of the power save mode
+    @Volatile
+    private var isPaused = false
+
+    //Time of the first scheduled refresh after the start or 0 if it was done
+    @Volatile
+    private var firstRefreshMillis = 0L
+
+    //Hosts from handing a scheduled refresh to the request queue until it or the refresh replacing it is finished
+    private val queuedRefreshHosts: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    //Updated by the tool window manager. Assume visible until we know better
+    @Volatile
+    private var isToolWindowVisible = true
     private val gitlabService: GitlabService = project.getService(GitlabService::class.java)
+    private val requestQueue: GitlabRequestQueue = project.getService(GitlabRequestQueue::class.java)
+    private val refreshSchedule: RefreshSchedule = project.getService(RefreshSchedule::class.java)
     private val messageBus = project.messageBus
+    //Refreshes of the user and scheduled ones may finish at the same time
+    @Volatile
     private var connectionFailureReported = false
 
     init {
 
-        backgroundTask = Runnable {
-            if (project.isDisposed) {
-                return@Runnable
-            }
-            if (!PipelineViewerConfigProject.getInstance(project).isEnabled) {
-                stopBackgroundTask()
-                return@Runnable
-            }
-            update(project, false)
-        }
-
         val messageBusConnection = project.messageBus.connect()
         messageBusConnection.subscribe(GitInitListener.GIT_INITIALIZED, GitInitListener {
             logger.debug("Retrieved GIT_INITIALIZED event. Starting background task if needed")
@@ -64,14 +81,10 @@ class BackgroundUpdateService(private val project: Project) {
                 return@GitInitListener
             }
             logger.debug("Starting background task")
-            scheduledFuture =
-                AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
-                    backgroundTask,
-                    5,
-                    PipelineViewerConfigApp.instance.refreshDelay.toLong(),
-                    TimeUnit.SECONDS
-                )
-            isActive = true
+            scheduleFirst(GIT_INITIALIZED_DELAY)
+        })
+        messageBusConnection.subscribe(BranchCheckedOutListener.BRANCH_CHECKED_OUT, BranchCheckedOutListener { repository, branchName ->
+            updateCheckedOutBranch(repository, branchName)
         })
         messageBusConnection.subscribe(ConfigChangedListener.CONFIG_CHANGED, ConfigChangedListener {
             if (!PipelineViewerConfigProject.getInstance(
@@ -84,78 +97,224 @@ class BackgroundUpdateService(private val project: Project) {
                 logger.debug("Retrieved CONFIG_CHANGED event. Project is enabled. Starting background task if needed")
             }
         })
+        messageBusConnection.subscribe(ToolWindowManagerListener.TOPIC, object : ToolWindowManagerListener {
+            override fun stateChanged(toolWindowManager: ToolWindowManager) {
+                val isVisible = toolWindowManager.getToolWindow(TOOL_WINDOW_ID)?.isVisible ?: false
+                if (isVisible != isToolWindowVisible) {
+                    isToolWindowVisible = isVisible
+                    if (isVisible) {
+                        catchUp("tool window shown")
+                    }
+                }
+            }
+        })
+        val applicationConnection = ApplicationManager.getApplication().messageBus.connect(this)
+        applicationConnection.subscribe(ApplicationActivationListener.TOPIC, object : ApplicationActivationListener {
+            override fun applicationActivated(ideFrame: IdeFrame) {
+                catchUp("IDE activated")
+            }
+        })
+        applicationConnection.subscribe(PowerSaveMode.TOPIC, PowerSaveMode.Listener {
+            if (!PowerSaveMode.isEnabled()) {
+                catchUp("power save mode disabled")
+            }
+        })
         gitService = project.getService(GitService::class.java)
         notifierService = project.getService(NotifierService::class.java)
     }
 
-    @Synchronized
+    /**
+     * Queues a full refresh. A refresh triggered by the user replaces a queued scheduled one and runs before other queued requests.
+     */
     fun update(project: Project?, triggeredByUser: Boolean) {
-        if (isRunning) {
-            return
+        val priority = if (triggeredByUser) GitlabRequestQueue.Priority.USER else GitlabRequestQueue.Priority.BACKGROUND
+        requestQueue.submit(priority, UNMAPPED_REMOTES_KEY) { gitlabService.checkForUnmappedRemotes(triggeredByUser) }
+        updateMappings(gitlabService.getMonitoredMappings(triggeredByUser), triggeredByUser)
+    }
+
+    /**
+     * Queues a refresh of the mappings of each host, so that a slow or unreachable host doesn't delay the refreshes of the others.
+     *
+     * @return completed when the mappings of all hosts are refreshed
+     */
+    internal fun updateMappings(monitoredMappings: List<Mapping>, triggeredByUser: Boolean): CompletableFuture<*> {
+        val priority = if (triggeredByUser) GitlabRequestQueue.Priority.USER else GitlabRequestQueue.Priority.BACKGROUND
+        val monitored = monitoredMappings.toSet()
+        val update = if (monitored.isEmpty()) {
+            //Removes the pipelines of mappings which aren't monitored anymore
+            requestQueue.submitAsync(priority, REFRESH_KEY) { runUpdate(triggeredByUser, monitored, null) }
+        } else {
+            val hostUpdates = monitored.groupBy { it.host }.map { (host, mappingsOfHost) ->
+                requestQueue.submitAsync(priority, REFRESH_KEY + host, host) { runUpdate(triggeredByUser, monitored, mappingsOfHost.toSet()) }
+            }
+            CompletableFuture.allOf(*hostUpdates.toTypedArray())
         }
-        val updateRunnable = Runnable {
-            val stopwatch = Stopwatch.createStarted()
-            getUpdateRunnable(triggeredByUser).run()
-            //For some stupid reason the progress bar is not removed if the process returns too quickly
-            if (stopwatch.elapsed(TimeUnit.MILLISECONDS) < 1000) {
-                try {
-                    Thread.sleep(500)
-                } catch (ignored: InterruptedException) {
+        showProgress(update)
+        return update.whenComplete { _, _ -> PollingBudget.instance.reschedule() }
+    }
+
+    override fun getNextRefreshMillis(nowMillis: Long): Long? {
+        if (!isActive || isPaused || project.isDisposed) {
+            return null
+        }
+        val first = firstRefreshMillis
+        if (first > 0) {
+            return if (queuedRefreshHosts.isEmpty()) first else null
+        }
+        //The mappings of a host with a refresh in flight are due again when it's finished
+        return refreshSchedule.getNextRefreshMillis(nowMillis) { it.host !in queuedRefreshHosts }
+    }
+
+    override fun getRefreshCost(nowMillis: Long): Int {
+        return refreshSchedule.getDueMappings(gitlabService.getMonitoredMappings(false), nowMillis).size
+    }
+
+    /**
+     * Queues a refresh of the mappings which are due according to the [RefreshSchedule]. Called by the [PollingBudget] which is told when
+     * the refresh is finished.
+     */
+    override fun refresh() {
+        firstRefreshMillis = 0
+        val dueHosts = refreshSchedule.getDueMappings(gitlabService.getMonitoredMappings(false), System.currentTimeMillis()).map { it.host }.toSet()
+        val hostRefreshes = (dueHosts - queuedRefreshHosts).map { host ->
+            queuedRefreshHosts.add(host)
+            //A full refresh of the host already queued with the same key covers the due mappings
+            requestQueue.submitAsync(GitlabRequestQueue.Priority.BACKGROUND, REFRESH_KEY + host, host) { refreshDueMappings(host) }
+                .whenComplete { _, _ ->
+                    queuedRefreshHosts.remove(host)
+                    PollingBudget.instance.reschedule()
                 }
+        }
+        if (hostRefreshes.isNotEmpty()) {
+            showProgress(CompletableFuture.allOf(*hostRefreshes.toTypedArray()))
+        }
+    }
+
+    private fun refreshDueMappings(host: String): CompletableFuture<*> {
+        if (project.isDisposed) {
+            return CompletableFuture.completedFuture(null)
+        }
+        if (!PipelineViewerConfigProject.getInstance(project).isEnabled) {
+            stopBackgroundTask()
+            return CompletableFuture.completedFuture(null)
+        }
+        if (PowerSaveMode.isEnabled()) {
+            //Resumed when the power save mode is disabled
+            pause()
+            return CompletableFuture.completedFuture(null)
+        }
+        val monitoredMappings = gitlabService.getMonitoredMappings(false).toSet()
+        val dueMappings = refreshSchedule.getDueMappings(monitoredMappings, System.currentTimeMillis()).filterTo(HashSet()) { it.host == host }
+        if (dueMappings.isEmpty()) {
+            logger.debug("No mapping of ", host, " due for a refresh")
+            return CompletableFuture.completedFuture(null)
+        }
+        return runUpdate(false, monitoredMappings, dueMappings)
+    }
+
+    /**
+     * Shows the progress bar until the refresh is finished. The progress waits for the completion without blocking a thread.
+     */
+    private fun showProgress(update: CompletableFuture<*>) {
+        if (update.isDone || !PipelineViewerConfigApp.instance.isShowProgressBar) {
+            return
+        }
+        coroutineScope.launch {
+            withBackgroundProgress(project, "Loading gitLab pipelines", false) {
+                update.handle { _, _ -> null }.await()
             }
         }
-        if (PipelineViewerConfigApp.instance.isShowProgressBar) {
-            val updateTask: Task.Backgroundable = object : Task.Backgroundable(project, "Loading gitLab pipelines", false) {
-                override fun run(indicator: ProgressIndicator) {
-                    try {
-                        updateRunnable.run()
-                    } finally {
-                        indicator.stop()
-                    }
+    }
+
+    /**
+     * Starts the refresh. The queue doesn't start the next request of the same kind and host before the returned future is completed.
+     *
+     * @param onlyMappings the mappings to refresh or null to refresh all
+     */
+    private fun runUpdate(triggeredByUser: Boolean, monitoredMappings: Set<Mapping>, onlyMappings: Set<Mapping>?): CompletableFuture<*> {
+        if (project.isDisposed) {
+            return CompletableFuture.completedFuture(null)
+        }
+        val update: CompletableFuture<Set<Mapping>> = try {
+            logger.debug("Starting IntelliJ background task", (if (triggeredByUser) " triggered by user" else ""))
+            //Scheduled up front so that mappings which fail to load aren't retried at once
+            refreshSchedule.refreshed(onlyMappings ?: monitoredMappings, gitlabService.getSnapshot(), getSlowdownFactor(), System.currentTimeMillis())
+            gitlabService.updatePipelineInfos(monitoredMappings, triggeredByUser, onlyMappings) { publish(it) }
+        } catch (e: Exception) {
+            CompletableFuture.failedFuture(e)
+        }
+        return update.handle { loadedMappings, e ->
+            val cause = if (e is CompletionException) e.cause else e
+            when (cause) {
+                null -> {
+                    refreshSchedule.refreshed(loadedMappings, gitlabService.getSnapshot(), getSlowdownFactor(), System.currentTimeMillis())
+                    connectionFailureReported = false
+                    logger.debug("Finished IntelliJ background task")
                 }
+                is FailsafeException, is IOException -> reportConnectionError(cause, triggeredByUser)
+                else -> throw CompletionException(cause)
             }
-
-            val updateProgressIndicator = BackgroundableProcessIndicator(updateTask)
-            ProgressManager.getInstance().runProcessWithProgressAsynchronously(updateTask, updateProgressIndicator)
-        } else {
-            ApplicationManager.getApplication().executeOnPooledThread(updateRunnable)
         }
     }
 
-    private fun getUpdateRunnable(triggeredByUser: Boolean): Runnable {
-        return Runnable {
-            if (isRunning || project.isDisposed) {
-                return@Runnable
+    private fun reportConnectionError(e: Throwable, triggeredByUser: Boolean) {
+        logger.info("Connection error: " + e.message, e)
+        if (ConfigProvider.instance.isShowConnectionErrorNotifications) {
+            if (!connectionFailureReported || triggeredByUser) {
+                logger.debug("Showing notification for first connection error after a successful connection")
+                notifierService.showError("Unable to connect to gitlab: $e")
+                connectionFailureReported = true
+            } else {
+                logger.debug("Not notification for connection error because one was already shown")
             }
-            isRunning = true
+        }
+    }
+
+    /**
+     * Notifies the listeners about the snapshot, e.g. after it was updated by a partial refresh.
+     */
+    fun publish(snapshot: PipelineSnapshot) {
+        if (messageBus.isDisposed) {
+            return
+        }
+        messageBus.syncPublisher(ReloadListener.RELOAD).reload(snapshot.pipelineInfos)
+        if (!snapshot.delta.isEmpty) {
+            messageBus.syncPublisher(PipelinesChangedListener.PIPELINES_CHANGED).pipelinesChanged(snapshot.delta, snapshot.pipelineInfos)
+        }
+    }
+
+    /**
+     * Loads the pipelines of a branch right after it was checked out instead of waiting for the next refresh.
+     */
+    private fun updateCheckedOutBranch(repository: GitRepository, branchName: String) {
+        if (project.isDisposed || !PipelineViewerConfigProject.getInstance(project).isEnabled) {
+            return
+        }
+        //The local branch may have a different name than the remote one
+        val ref = repository.currentBranch?.findTrackedBranch(repository)?.nameForRemoteOperations ?: branchName
+        val mappings = repository.remotes.flatMap { it.urls }.mapNotNull { ConfigProvider.instance.getMappingByRemoteUrl(it) }.distinct()
+        if (mappings.isEmpty()) {
+            logger.debug("No mapping found for repository ", repository, " of checked out branch ", branchName)
+            return
+        }
+        updateRef(mappings, ref, GitlabRequestQueue.Priority.CHECKOUT)
+    }
+
+    /**
+     * Queues a refresh of only the pipelines and merge request of the ref.
+     */
+    fun updateRef(mappings: List<Mapping>, ref: String, priority: GitlabRequestQueue.Priority) {
+        val key = "ref:" + mappings.joinToString(",") { it.gitlabProjectId } + ":" + ref
+        val lane = mappings.map { it.host }.distinct().singleOrNull() ?: GitlabRequestQueue.DEFAULT_LANE
+        requestQueue.submit(priority, key, lane) {
             try {
-                logger.debug("Starting IntelliJ background task", (if (triggeredByUser) " triggered by user" else ""))
-                gitlabService.checkForUnmappedRemotes(triggeredByUser)
-                gitlabService.updatePipelineInfos(triggeredByUser)
-                gitlabService.updateFromGraphQl()
-                if (!messageBus.isDisposed) {
-                    messageBus.syncPublisher(ReloadListener.RELOAD).reload(gitlabService.getPipelineInfos())
+                for (mapping in mappings) {
+                    logger.debug("Loading pipelines for ref ", ref, " of remote ", mapping.remote)
+                    gitlabService.updatePipelinesForRef(mapping, ref) { publish(it) }
                 }
-                connectionFailureReported = false
-                logger.debug("Finished IntelliJ background task")
             } catch (e: Exception) {
-                if (e is FailsafeException || e is IOException) {
-                    logger.info("Connection error: " + e.message, e)
-                    if (ConfigProvider.instance.isShowConnectionErrorNotifications) {
-                        if (!connectionFailureReported || triggeredByUser) {
-                            logger.debug("Showing notification for first connection error after a successful connection")
-                            notifierService.showError("Unable to connect to gitlab: $e")
-                            connectionFailureReported = true
-                        } else {
-                            logger.debug("Not notification for connection error because one was already shown")
-                        }
-                    }
-                } else {
-                    throw e
-                }
-
-            } finally {
-                isRunning = false
+                //Connection errors are reported by the regular refresh
+                logger.info("Unable to load pipelines for ref $ref", e)
             }
         }
     }
@@ -170,14 +329,7 @@ class BackgroundUpdateService(private val project: Project) {
             return false
         }
         logger.debug("Starting background task")
-        scheduledFuture = AppExecutorUtil.getAppScheduledExecutorService()
-            .scheduleWithFixedDelay(
-                backgroundTask,
-                INITIAL_DELAY.toLong(),
-                PipelineViewerConfigApp.instance.refreshDelay.toLong(),
-                TimeUnit.SECONDS
-            )
-        isActive = true
+        scheduleFirst(INITIAL_DELAY)
         return true
     }
 
@@ -185,38 +337,103 @@ class BackgroundUpdateService(private val project: Project) {
     fun stopBackgroundTask() {
         if (!isActive) {
             logger.debug("Background task already stopped")
-        }
-        if (scheduledFuture == null) {
-            //Should not happen but can happen... (don't know when)
             return
         }
         logger.debug("Stopping background task")
-        val cancelled = scheduledFuture!!.cancel(false)
-        isActive = !cancelled
-        logger.debug("Background task cancelled: ", cancelled)
+        //A queued refresh doesn't schedule the next one when inactive
+        isActive = false
+        PollingBudget.instance.unregister(this)
     }
 
     @Synchronized
     fun restartBackgroundTask() {
         logger.debug("Restarting background task")
-        if (isActive) {
-            val cancelled = scheduledFuture!!.cancel(false)
-            isActive = !cancelled
-            logger.debug("Background task cancelled: ", cancelled)
-        }
-        scheduledFuture = AppExecutorUtil.getAppScheduledExecutorService()
-            .scheduleWithFixedDelay(
-                backgroundTask,
-                INITIAL_DELAY.toLong(),
-                PipelineViewerConfigApp.instance.refreshDelay.toLong(),
-                TimeUnit.SECONDS
-            )
+        refreshSchedule.reset()
+        scheduleFirst(INITIAL_DELAY)
+    }
+
+    /**
+     * Refreshes the mappings at once which would have been refreshed already if the refreshes weren't slowed down or paused, e.g. when the
+     * user comes back to the IDE.
+     */
+    @Synchronized
+    private fun catchUp(reason: String) {
+        if (!isActive || project.isDisposed || PowerSaveMode.isEnabled()) {
+            return
+        }
+        val anyOverdue = refreshSchedule.makeOverdueMappingsDue(System.currentTimeMillis())
+        if (!anyOverdue && !isPaused) {
+            return
+        }
+        logger.debug("Catching up after ", reason)
+        isPaused = false
+        PollingBudget.instance.reschedule()
+    }
+
+    @Synchronized
+    private fun pause() {
+        logger.debug("Pausing scheduled refreshes in power save mode")
+        isPaused = true
+    }
+
+    /**
+     * The IDE and the tool window are usually only in the background for a short time. Slowing down instead of pausing keeps the
+     * notifications coming.
+     */
+    fun getSlowdownFactor(): Int {
+        var factor = 1
+        if (!ApplicationManager.getApplication().isActive) {
+            factor *= INACTIVE_SLOWDOWN_FACTOR
+        }
+        if (!isToolWindowVisible) {
+            factor *= HIDDEN_SLOWDOWN_FACTOR
+        }
+        return factor
+    }
+
+    override fun dispose() {
+        PollingBudget.instance.unregister(this)
+    }
+
+    /**
+     * The refreshes are run by the [PollingBudget] when the next mapping is due. The delay of each mapping deviates randomly from its refresh
+     * delay. With a fixed delay the IDEs of a whole team stay in lockstep (e.g. after a VPN reconnect) and hit gitlab at the same time.
+     */
+    @Synchronized
+    private fun scheduleFirst(initialDelaySeconds: Int) {
+        val delayMillis = initialDelayMillis(initialDelaySeconds, PipelineViewerConfigApp.instance.refreshDelay, ThreadLocalRandom.current())
+        logger.debug("Scheduling first refresh in ", delayMillis, "ms")
+        firstRefreshMillis = System.currentTimeMillis() + delayMillis
         isActive = true
+        isPaused = false
+        PollingBudget.instance.register(this)
     }
 
     companion object {
         private val logger = Logger.getInstance(BackgroundUpdateService::class.java)
 
         private const val INITIAL_DELAY = 0
+        //Full and scheduled refreshes of a host share the key so that a refresh triggered by the user replaces a queued scheduled one
+        private const val REFRESH_KEY = "refresh:"
+        private const val UNMAPPED_REMOTES_KEY = "unmappedRemotes"
+        private const val TOOL_WINDOW_ID = "Gitlab pipeline viewer"
+        private const val INACTIVE_SLOWDOWN_FACTOR = 4
+        private const val HIDDEN_SLOWDOWN_FACTOR = 2
+        private const val GIT_INITIALIZED_DELAY = 5
+
+        //Each delay deviates up to 20% from the refresh delay
+        private const val JITTER = 0.2
+
+        //The first refresh is delayed by a random offset of up to this (or the refresh delay if shorter)
+        private const val MAX_INITIAL_OFFSET_MILLIS = 10_000L
+
+        internal fun jitteredDelayMillis(refreshDelaySeconds: Int, random: Random): Long {
+            return (refreshDelaySeconds * 1000L * (1 - JITTER + 2 * JITTER * random.nextDouble())).toLong()
+        }
+
+        internal fun initialDelayMillis(initialDelaySeconds: Int, refreshDelaySeconds: Int, random: Random): Long {
+            val maxOffset = minOf(MAX_INITIAL_OFFSET_MILLIS, refreshDelaySeconds * 1000L)
+            return initialDelaySeconds * 1000L + (random.nextDouble() * maxOffset).toLong()
+        }
     }
 }
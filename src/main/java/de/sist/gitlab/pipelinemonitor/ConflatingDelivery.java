@@ -0,0 +1,178 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events to a single subscriber on its own serialized executor so that a slow subscriber neither delays the publisher nor the other
+ * subscribers. If a new event is published before the pending one was consumed the pending one is merged with (or replaced by) the new one.
+ * The executor is shut down when the project is disposed.
+ */
+public class ConflatingDelivery<T> implements Disposable {
+
+    private static final Logger logger = Logger.getInstance(ConflatingDelivery.class);
+
+    //Statistics by subscriber name per project. Removed when the subscriber's delivery is disposed
+    private static final Map<Project, Map<String, Statistics>> STATISTICS = new ConcurrentHashMap<>();
+
+    private final Project project;
+    private final String subscriber;
+    private final String name;
+    private final Consumer<T> consumer;
+    private final BinaryOperator<T> merger;
+    private final ExecutorService executor;
+    private final AtomicReference<Pending<T>> pending = new AtomicReference<>();
+    private final Statistics statistics;
+
+    ConflatingDelivery(Project project, String name, Consumer<T> consumer, BinaryOperator<T> merger) {
+        this.project = project;
+        this.subscriber = name;
+        this.name = project.getName() + " " + name;
+        this.consumer = consumer;
+        this.merger = merger;
+        executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("GitLab pipeline viewer " + this.name, 1);
+        statistics = STATISTICS.computeIfAbsent(project, x -> new ConcurrentHashMap<>()).computeIfAbsent(name, x -> new Statistics());
+        if (!Disposer.tryRegister(project, this)) {
+            dispose();
+        }
+    }
+
+    /**
+     * Wraps a listener so that it only ever receives the latest snapshot.
+     */
+    public static ReloadListener reload(Project project, String name, ReloadListener listener) {
+        final ConflatingDelivery<Map<Mapping, List<PipelineJobStatus>>> delivery = new ConflatingDelivery<>(project, name, listener::reload, (older, newer) -> newer);
+        return delivery::publish;
+    }
+
+    /**
+     * Wraps a listener so that deltas published while it's busy are merged into one.
+     */
+    public static PipelinesChangedListener pipelinesChanged(Project project, String name, PipelinesChangedListener listener) {
+        final ConflatingDelivery<PipelinesChange> delivery = new ConflatingDelivery<>(project, name, change -> {
+            //Merged deltas may cancel each other out
+            if (!change.delta().isEmpty()) {
+                listener.pipelinesChanged(change.delta(), change.pipelineInfos());
+            }
+        }, (older, newer) -> new PipelinesChange(PipelinesDelta.merge(older.delta(), newer.delta()), newer.pipelineInfos()));
+        return (delta, pipelineInfos) -> delivery.publish(new PipelinesChange(delta, pipelineInfos));
+    }
+
+    /**
+     * @return the statistics of the open projects by project and subscriber name
+     */
+    public static Map<String, Statistics> getStatistics() {
+        final Map<String, Statistics> statistics = new TreeMap<>();
+        STATISTICS.forEach((project, statisticsOfProject) -> statisticsOfProject.forEach((name, x) -> statistics.put(project.getName() + " " + name, x)));
+        return statistics;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+        //Other subscribers of the project keep their statistics
+        STATISTICS.computeIfPresent(project, (x, statisticsOfProject) -> {
+            statisticsOfProject.remove(subscriber, statistics);
+            return statisticsOfProject.isEmpty() ? null : statisticsOfProject;
+        });
+    }
+
+    private void publish(T event) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        final long now = System.nanoTime();
+        //Keep the time of the older event so that the latency includes the time the event was waiting
+        final Pending<T> previous = pending.getAndUpdate(x -> x == null ? new Pending<>(event, now) : new Pending<>(merger.apply(x.event(), event), x.publishedNanos()));
+        if (previous == null) {
+            executor.execute(this::deliver);
+        } else {
+            statistics.conflated.incrementAndGet();
+            logger.debug("Conflated event for ", name);
+        }
+    }
+
+    private void deliver() {
+        final Pending<T> toDeliver = pending.getAndSet(null);
+        if (toDeliver == null) {
+            return;
+        }
+        try {
+            consumer.accept(toDeliver.event());
+        } catch (Exception e) {
+            logger.error("Error while delivering event to " + name, e);
+        } finally {
+            statistics.record(System.nanoTime() - toDeliver.publishedNanos());
+            logger.debug("Delivered event to ", name, ". ", statistics);
+        }
+    }
+
+    private record Pending<T>(T event, long publishedNanos) {
+    }
+
+    private record PipelinesChange(PipelinesDelta delta, Map<Mapping, List<PipelineJobStatus>> pipelineInfos) {
+    }
+
+    public static class Statistics {
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong conflated = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final AtomicLong lastLatencyNanos = new AtomicLong();
+
+        private void record(long latencyNanos) {
+            delivered.incrementAndGet();
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+            lastLatencyNanos.set(latencyNanos);
+        }
+
+        public long getDelivered() {
+            return delivered.get();
+        }
+
+        public long getConflated() {
+            return conflated.get();
+        }
+
+        public long getLastLatencyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos.get());
+        }
+
+        public long getMaxLatencyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+        }
+
+        public long getAverageLatencyMillis() {
+            final long count = delivered.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count);
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Statistics.class.getSimpleName() + "[", "]")
+                    .add("delivered=" + getDelivered())
+                    .add("conflated=" + getConflated())
+                    .add("lastLatency=" + getLastLatencyMillis() + "ms")
+                    .add("averageLatency=" + getAverageLatencyMillis() + "ms")
+                    .add("maxLatency=" + getMaxLatencyMillis() + "ms")
+                    .toString();
+        }
+    }
+}
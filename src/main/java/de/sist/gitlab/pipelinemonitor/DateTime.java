@@ -1,5 +1,6 @@
 package de.sist.gitlab.pipelinemonitor;
 
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -10,6 +11,25 @@ public class DateTime {
     private static final DateTimeFormatter FORMATTER_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     private static final DateTimeFormatter FORMATTER_TIME = DateTimeFormatter.ofPattern("'Today' HH:mm");
 
+    //Start of the current and the next day in epoch millis, only recomputed when the day changes
+    private static volatile long startOfToday;
+    private static volatile long startOfTomorrow;
+
+    public static String formatDateTime(long epochMillis) {
+        final ZonedDateTime dateTime = Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault());
+        return epochMillis < getStartOfToday() ? FORMATTER_DATE.format(dateTime) : FORMATTER_TIME.format(dateTime);
+    }
+
+    public static long getStartOfToday() {
+        final long now = System.currentTimeMillis();
+        if (now >= startOfTomorrow || now < startOfToday) {
+            final ZonedDateTime today = ZonedDateTime.now(ZoneId.systemDefault()).truncatedTo(ChronoUnit.DAYS);
+            startOfToday = today.toInstant().toEpochMilli();
+            startOfTomorrow = today.plusDays(1).toInstant().toEpochMilli();
+        }
+        return startOfToday;
+    }
+
     public static String formatDateTime(ZonedDateTime dateTime) {
         if (dateTime.isBefore(ZonedDateTime.now(ZoneId.systemDefault()).truncatedTo(ChronoUnit.DAYS))) {
             return FORMATTER_DATE.format(dateTime);
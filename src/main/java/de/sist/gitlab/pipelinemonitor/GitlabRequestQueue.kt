@@ -0,0 +1,165 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.project.Project
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Runs the refreshes of a project, the most important first. Requests which are still queued are replaced by a more important request with
+ * the same key, e.g. a scheduled refresh by one triggered by the user.
+ *
+ * Every request belongs to a lane, usually the gitlab host it loads from. The lanes don't wait for each other, so a slow host doesn't delay
+ * the others. Within a lane background requests run one after another, as do all others. One of each may run at the same time, so that e.g.
+ * a refresh triggered by the user doesn't wait for a slow scheduled refresh.
+ *
+ * A request is finished when the future it returns is completed. No thread waits for that, the next request is started from the completion.
+ */
+@Service(Service.Level.PROJECT)
+class GitlabRequestQueue(private val project: Project) : Disposable {
+
+    /**
+     * In order of importance.
+     */
+    enum class Priority {
+        USER,
+        CHECKOUT,
+        SELECTION,
+        BACKGROUND
+    }
+
+    private class Request(
+        val priority: Priority,
+        val sequence: Long,
+        val key: String,
+        val lane: String,
+        val start: () -> CompletableFuture<*>,
+        //Shared with the request this one replaced
+        val finished: CompletableFuture<Any?>
+    ) : Comparable<Request> {
+        val slot = Slot(lane, priority == Priority.BACKGROUND)
+
+        override fun compareTo(other: Request): Int {
+            val byPriority = priority.compareTo(other.priority)
+            return if (byPriority != 0) byPriority else sequence.compareTo(other.sequence)
+        }
+    }
+
+    //Ordered by importance. Guarded by this
+    private val queue = TreeSet<Request>()
+    private var sequence = 0L
+    //Requests which load synchronously wait for gitlab, so they run on virtual threads instead of blocking threads of the shared pool
+    private val worker: ExecutorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("GitLab requests ", 0).factory())
+    private val runningSlots: MutableSet<Slot> = HashSet()
+
+    /**
+     * Background requests and all others of a lane run independently of each other.
+     */
+    private data class Slot(val lane: String, val isBackground: Boolean)
+
+    /**
+     * Queues a request which is finished when the runnable returns.
+     *
+     * @param key  identifies what is loaded. Only one request per key is queued
+     * @param lane the requests of different lanes don't wait for each other
+     * @return completed when the request or the one that replaced it is finished
+     */
+    fun submit(priority: Priority, key: String, lane: String = DEFAULT_LANE, runnable: Runnable): CompletableFuture<*> {
+        return submitAsync(priority, key, lane) {
+            runnable.run()
+            CompletableFuture.completedFuture(null)
+        }
+    }
+
+    /**
+     * Queues a request which is finished when the future returned by [start] is completed.
+     *
+     * @param key  identifies what is loaded. Only one request per key is queued
+     * @param lane the requests of different lanes don't wait for each other
+     * @return completed when the request or the one that replaced it is finished
+     */
+    @Synchronized
+    fun submitAsync(priority: Priority, key: String, lane: String = DEFAULT_LANE, start: () -> CompletableFuture<*>): CompletableFuture<*> {
+        if (project.isDisposed || worker.isShutdown) {
+            return CompletableFuture.completedFuture(null)
+        }
+        var finished = CompletableFuture<Any?>()
+        for (queued in queue) {
+            if (queued.key != key) {
+                continue
+            }
+            if (queued.priority <= priority) {
+                logger.debug("Request ", key, " with priority ", priority, " already queued with priority ", queued.priority)
+                return queued.finished
+            }
+            logger.debug("Request ", key, " with priority ", queued.priority, " superseded by priority ", priority)
+            queue.remove(queued)
+            finished = queued.finished
+            break
+        }
+        queue.add(Request(priority, ++sequence, key, lane, start, finished))
+        startNext()
+        return finished
+    }
+
+    /**
+     * Starts the most important request of every slot which is free at that time.
+     */
+    @Synchronized
+    private fun startNext() {
+        if (project.isDisposed || worker.isShutdown) {
+            return
+        }
+        val iterator = queue.iterator()
+        while (iterator.hasNext()) {
+            val request = iterator.next()
+            if (!runningSlots.add(request.slot)) {
+                continue
+            }
+            iterator.remove()
+            logger.debug("Starting request ", request.key, " with priority ", request.priority, ". Still queued: ", queue.size)
+            worker.execute { run(request) }
+        }
+    }
+
+    private fun run(request: Request) {
+        val future = try {
+            request.start()
+        } catch (e: Exception) {
+            CompletableFuture.failedFuture<Any>(e)
+        }
+        future.whenComplete { _, e ->
+            if (e != null) {
+                logger.info("Request " + request.key + " failed", e)
+            }
+            finished(request)
+            request.finished.complete(null)
+        }
+    }
+
+    @Synchronized
+    private fun finished(request: Request) {
+        runningSlots.remove(request.slot)
+        startNext()
+    }
+
+    override fun dispose() {
+        worker.shutdownNow()
+        //Nobody must wait for requests which will never run
+        synchronized(this) {
+            queue.forEach { it.finished.complete(null) }
+            queue.clear()
+        }
+    }
+
+    companion object {
+        private val logger = Logger.getInstance(GitlabRequestQueue::class.java)
+
+        //For requests which don't load from a single host
+        const val DEFAULT_LANE = ""
+    }
+}
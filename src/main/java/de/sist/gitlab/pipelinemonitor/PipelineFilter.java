@@ -1,13 +1,10 @@
 package de.sist.gitlab.pipelinemonitor;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Strings;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import de.sist.gitlab.pipelinemonitor.config.*;
 import de.sist.gitlab.pipelinemonitor.git.GitService;
-import de.sist.gitlab.pipelinemonitor.gitlab.GitlabService;
-import de.sist.gitlab.pipelinemonitor.gitlab.mapping.MergeRequest;
 import git4idea.repo.GitRepository;
 
 import java.time.Instant;
@@ -25,7 +22,7 @@ public class PipelineFilter {
     private final ConfigProvider config;
     private final Project project;
     private final GitService gitService;
-    private PipelineJobStatus latestShown;
+    private volatile PipelineJobStatus latestShown;
     private final Map<GitRepository, Instant> lastTagUpdate = new HashMap<>();
     private final Map<GitRepository, List<String>> repoToTags = new HashMap<>();
 
@@ -36,7 +33,8 @@ public class PipelineFilter {
         gitService = project.getService(GitService.class);
     }
 
-    public List<PipelineJobStatus> filterPipelines(Mapping mapping, List<PipelineJobStatus> toFilter, boolean forNotification) {
+    //Called by the notifier and the tool window on different threads
+    public synchronized List<PipelineJobStatus> filterPipelines(Mapping mapping, List<PipelineJobStatus> toFilter, boolean forNotification) {
         Set<String> tags = new HashSet<>();
 
         GitRepository gitRepository = gitService.getRepositoryByRemoteUrl(mapping.getRemote());
@@ -67,47 +65,36 @@ public class PipelineFilter {
         if (project.isDisposed()) {
             return Collections.emptyList();
         }
-        final List<MergeRequest> mergeRequests = project.getService(GitlabService.class).getMergeRequests();
         final List<PipelineJobStatus> statuses = toFilter.stream().filter(x -> {
-            if (PipelineFilter.isMatch(x.branchName, config.getBranchesToIgnore(project))) {
-                logger.debug("Pipeline for branch ", x.branchName, " is ignored and will be filtered out");
+            if (PipelineFilter.isMatch(x.getBranchName(), config.getBranchesToIgnore(project))) {
+                logger.debug("Pipeline for branch ", x.getBranchName(), " is ignored and will be filtered out");
                 return false;
             }
-            if (appConfig.isOnlyForRemoteBranchesExist() && !remoteBranches.contains(x.branchName)) {
-                logger.debug("Pipeline for branch ", x.branchName, " is for a remote branch that doesn't exist and will be filtered out");
+            if (appConfig.isOnlyForRemoteBranchesExist() && !remoteBranches.contains(x.getBranchName())) {
+                logger.debug("Pipeline for branch ", x.getBranchName(), " is for a remote branch that doesn't exist and will be filtered out");
                 return false;
             }
-            if (appConfig.maxAgeDays != null && x.creationTime.isBefore(ZonedDateTime.now().minusDays(appConfig.maxAgeDays))) {
-                logger.debug("Pipeline for branch ", x.branchName, " is older than ", appConfig.maxAgeDays, " days and will be removed. Creation time: ", x.creationTime);
+            if (appConfig.maxAgeDays != null && x.getCreationTime() < ZonedDateTime.now().minusDays(appConfig.maxAgeDays).toInstant().toEpochMilli()) {
+                logger.debug("Pipeline for branch ", x.getBranchName(), " is older than ", appConfig.maxAgeDays, " days and will be removed. Creation time: ", x.getCreationDateTime());
                         return false;
                     }
-                    if (trackedBranches.contains(x.branchName)) {
-                        logger.debug("Pipeline for branch ", x.branchName, " is tracked locally and will be retained");
+                    if (trackedBranches.contains(x.getBranchName())) {
+                        logger.debug("Pipeline for branch ", x.getBranchName(), " is tracked locally and will be retained");
                         return true;
                     }
-                    if (PipelineFilter.isMatch(x.branchName, config.getBranchesToWatch(project)) && (!forNotification || config.isShowNotificationForWatchedBranches())) {
-                        logger.debug("Pipeline for branch ", x.branchName, " is in list of branches to watch and will be retained");
+                    if (PipelineFilter.isMatch(x.getBranchName(), config.getBranchesToWatch(project)) && (!forNotification || config.isShowNotificationForWatchedBranches())) {
+                        logger.debug("Pipeline for branch ", x.getBranchName(), " is in list of branches to watch and will be retained");
                         return true;
                     }
-                    if (tags.contains(x.branchName)) {
-                        logger.debug("Pipeline for ref ", x.branchName, " is in the list of tags and will be retained");
+                    if (tags.contains(x.getBranchName())) {
+                        logger.debug("Pipeline for ref ", x.getBranchName(), " is in the list of tags and will be retained");
                         return true;
                     }
-                    final Optional<MergeRequest> matchingMergeRequest = mergeRequests.stream()
-                            .filter(mr -> mr.getHeadPipeline() != null && Objects.equals(mr.getHeadPipeline().getRef(), x.branchName))
-                            .findFirst();
-                    if (matchingMergeRequest.isPresent()) {
-                        logger.debug("Branch with ref ", x.branchName, " matches MR ", matchingMergeRequest.get());
-                        final String prefix = Strings.nullToEmpty(appConfig.mrPipelinePrefix);
-                        if (appConfig.getMrPipelineDisplayType() == PipelineViewerConfigApp.MrPipelineDisplayType.SOURCE_BRANCH) {
-                            x.setBranchNameDisplay(prefix + matchingMergeRequest.get().getSourceBranch());
-                        } else {
-                            x.setBranchNameDisplay(prefix + matchingMergeRequest.get().getTitle());
-                        }
-                        x.mergeRequestLink = matchingMergeRequest.get().getWebUrl();
+                    if (x.isMergeRequestPipeline()) {
+                        logger.debug("Branch with ref ", x.getBranchName(), " is the head pipeline of an MR and will be retained");
                         return true;
                     }
-                    logger.debug("Pipeline for branch ", x.branchName, " will be filtered out");
+                    logger.debug("Pipeline for branch ", x.getBranchName(), " will be filtered out");
                     return false;
                 }
         ).distinct().collect(Collectors.toList());
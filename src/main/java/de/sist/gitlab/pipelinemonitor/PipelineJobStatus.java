@@ -2,32 +2,57 @@ package de.sist.gitlab.pipelinemonitor;
 
 import com.google.common.base.Objects;
 
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.StringJoiner;
 
+/**
+ * Immutable, so the pipelines of a published snapshot can be read by any thread without copying them.
+ */
 public class PipelineJobStatus {
 
-    private final Long id;
-    public String branchName;
-    public final String projectId;
-    public final ZonedDateTime creationTime;
-    public final ZonedDateTime updateTime;
-    public final String result;
-    public String statusGroup;
-    public final String pipelineLink;
-    public String mergeRequestLink;
-    public final String source;
-    private String branchNameDisplay;
-
-    public PipelineJobStatus(Long id, String ref, String projectId, ZonedDateTime creationTime, ZonedDateTime updatedAt, String result, String webUrl, String source) {
+    private final long id;
+    private final String branchName;
+    private final String projectId;
+    //Epoch millis
+    private final long creationTime;
+    private final long updateTime;
+    private final PipelineStatus status;
+    private final String statusGroup;
+    //Shared by all pipelines of a mapping, the link is only computed when needed
+    private final String pipelineLinkBase;
+    private final String mergeRequestLink;
+    private final String source;
+    private final String branchNameDisplay;
+
+    public PipelineJobStatus(long id, String ref, String projectId, long creationTime, long updateTime, PipelineStatus status, String pipelineLinkBase, String source) {
+        this(id, ref, projectId, creationTime, updateTime, status, pipelineLinkBase, source, null, null, null);
+    }
+
+    private PipelineJobStatus(long id, String ref, String projectId, long creationTime, long updateTime, PipelineStatus status, String pipelineLinkBase, String source,
+                              String statusGroup, String mergeRequestLink, String branchNameDisplay) {
         this.id = id;
         this.branchName = ref;
         this.projectId = projectId;
-        this.pipelineLink = webUrl;
+        this.pipelineLinkBase = pipelineLinkBase;
         this.creationTime = creationTime;
-        this.updateTime = updatedAt;
-        this.result = result;
+        this.updateTime = updateTime;
+        this.status = status;
         this.source = source;
+        this.statusGroup = statusGroup;
+        this.mergeRequestLink = mergeRequestLink;
+        this.branchNameDisplay = branchNameDisplay;
+    }
+
+    /**
+     * @param mergeRequestLink  the link of the merge request of the pipeline's branch or null if there is none
+     * @param branchNameDisplay the name to show instead of the branch name if this is the head pipeline of a merge request, otherwise null
+     * @param statusGroup       the group of the detailed status (e.g. "success-with-warnings") or null if unknown
+     * @return a copy with the given information loaded together with the merge requests
+     */
+    public PipelineJobStatus withMergeRequestInfo(String mergeRequestLink, String branchNameDisplay, String statusGroup) {
+        return new PipelineJobStatus(id, branchName, projectId, creationTime, updateTime, status, pipelineLinkBase, source, statusGroup, mergeRequestLink, branchNameDisplay);
     }
 
     @Override
@@ -38,16 +63,16 @@ public class PipelineJobStatus {
         if (!(o instanceof PipelineJobStatus that)) {
             return false;
         }
-        return Objects.equal(branchName, that.branchName) &&
+        return id == that.id &&
+                creationTime == that.creationTime &&
+                status == that.status &&
+                Objects.equal(branchName, that.branchName) &&
                 Objects.equal(projectId, that.projectId) &&
-                Objects.equal(creationTime, that.creationTime) &&
-                Objects.equal(result, that.result) &&
-                Objects.equal(source, that.source) &&
-                Objects.equal(pipelineLink, that.pipelineLink)
+                Objects.equal(source, that.source)
                 ;
     }
 
-    public Long getId() {
+    public long getId() {
         return id;
     }
 
@@ -55,28 +80,36 @@ public class PipelineJobStatus {
         return branchName;
     }
 
-    public void setBranchName(String branchName) {
-        this.branchName = branchName;
-    }
-
     public String getProjectId() {
         return projectId;
     }
 
-    public ZonedDateTime getCreationTime() {
+    public long getCreationTime() {
         return creationTime;
     }
 
-    public ZonedDateTime getUpdateTime() {
+    public long getUpdateTime() {
         return updateTime;
     }
 
+    public ZonedDateTime getCreationDateTime() {
+        return toDateTime(creationTime);
+    }
+
+    public ZonedDateTime getUpdateDateTime() {
+        return toDateTime(updateTime);
+    }
+
+    public PipelineStatus getStatus() {
+        return status;
+    }
+
     public String getResult() {
-        return result;
+        return status.getValue();
     }
 
     public String getPipelineLink() {
-        return pipelineLink;
+        return pipelineLinkBase + id;
     }
 
 
@@ -92,30 +125,33 @@ public class PipelineJobStatus {
         return branchNameDisplay != null ? branchNameDisplay : branchName;
     }
 
-    public void setBranchNameDisplay(String branchNameDisplay) {
-        this.branchNameDisplay = branchNameDisplay;
+    /**
+     * @return true if this is the head pipeline of a merge request (in which case the display name is set from the MR)
+     */
+    public boolean isMergeRequestPipeline() {
+        return branchNameDisplay != null;
     }
 
     public String getStatusGroup() {
         return statusGroup;
     }
 
-    public void setStatusGroup(String statusGroup) {
-        this.statusGroup = statusGroup;
-    }
-
     @Override
     public int hashCode() {
-        return Objects.hashCode(branchName, creationTime, result, pipelineLink);
+        return Objects.hashCode(id, branchName, creationTime, status);
+    }
+
+    private static ZonedDateTime toDateTime(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault());
     }
 
     @Override
     public String toString() {
         return new StringJoiner(", ", PipelineJobStatus.class.getSimpleName() + "[", "]")
+                .add("id=" + id)
                 .add("branchName='" + branchName + "'")
-                .add("time=" + creationTime)
-                .add("result='" + result + "'")
-                .add("pipelineLink='" + pipelineLink + "'")
+                .add("time=" + getCreationDateTime())
+                .add("status='" + status + "'")
                 .add("mergeRequestLink='" + mergeRequestLink + "'")
                 .add("source='" + source + "'")
                 .toString();
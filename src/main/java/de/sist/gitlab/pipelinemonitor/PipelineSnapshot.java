@@ -0,0 +1,66 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+import de.sist.gitlab.pipelinemonitor.gitlab.mapping.MergeRequest;
+
+import java.util.*;
+
+/**
+ * Immutable state of all loaded pipelines and merge requests. Every refresh creates a new version which is never changed after publication.
+ */
+public class PipelineSnapshot {
+
+    public static final PipelineSnapshot EMPTY = new PipelineSnapshot(0, Collections.emptyMap(), Collections.emptyList(), PipelinesDelta.EMPTY);
+
+    private final long version;
+    private final Map<Mapping, List<PipelineJobStatus>> pipelineInfos;
+    private final List<MergeRequest> mergeRequests;
+    private final PipelinesDelta delta;
+
+    private PipelineSnapshot(long version, Map<Mapping, List<PipelineJobStatus>> pipelineInfos, List<MergeRequest> mergeRequests, PipelinesDelta delta) {
+        this.version = version;
+        this.pipelineInfos = pipelineInfos;
+        this.mergeRequests = mergeRequests;
+        this.delta = delta;
+    }
+
+    /**
+     * Creates the next version. The pipelines must not be changed after this is called.
+     */
+    public PipelineSnapshot next(Map<Mapping, List<PipelineJobStatus>> pipelineInfos, List<MergeRequest> mergeRequests) {
+        final Map<Mapping, List<PipelineJobStatus>> copy = new HashMap<>();
+        for (Map.Entry<Mapping, List<PipelineJobStatus>> entry : pipelineInfos.entrySet()) {
+            copy.put(entry.getKey(), List.copyOf(entry.getValue()));
+        }
+        return new PipelineSnapshot(version + 1, Collections.unmodifiableMap(copy), List.copyOf(mergeRequests), PipelinesDelta.compute(this.pipelineInfos, copy));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<Mapping, List<PipelineJobStatus>> getPipelineInfos() {
+        return pipelineInfos;
+    }
+
+    public List<MergeRequest> getMergeRequests() {
+        return mergeRequests;
+    }
+
+    /**
+     * @return the changes compared to the previous version
+     */
+    public PipelinesDelta getDelta() {
+        return delta;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", PipelineSnapshot.class.getSimpleName() + "[", "]")
+                .add("version=" + version)
+                .add("mappings=" + pipelineInfos.size())
+                .add("mergeRequests=" + mergeRequests.size())
+                .add("delta=" + delta)
+                .toString();
+    }
+}
@@ -0,0 +1,88 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pipeline status as returned by the gitlab API (field "status").
+ */
+public enum PipelineStatus {
+
+    CREATED("created"),
+    WAITING_FOR_RESOURCE("waiting_for_resource"),
+    PREPARING("preparing"),
+    PENDING("pending"),
+    RUNNING("running"),
+    SUCCESS("success"),
+    FAILED("failed"),
+    CANCELING("canceling"),
+    CANCELED("canceled"),
+    SKIPPED("skipped"),
+    MANUAL("manual"),
+    SCHEDULED("scheduled"),
+    UNKNOWN("unknown");
+
+    private static final Map<String, PipelineStatus> BY_VALUE = new HashMap<>();
+    private static final Set<PipelineStatus> FINAL_STATUSES = EnumSet.of(SUCCESS, FAILED, CANCELED, SKIPPED);
+    //A pipeline usually passes through these quickly (or gets stuck in them), nobody needs to be told about them
+    private static final Set<PipelineStatus> TRANSIENT_STATUSES = EnumSet.of(CREATED, WAITING_FOR_RESOURCE, PREPARING, CANCELING, UNKNOWN);
+    private static final Set<PipelineStatus> INTERESTING_FOR_NEW_PIPELINES = EnumSet.complementOf(EnumSet.copyOf(TRANSIENT_STATUSES));
+
+    static {
+        for (PipelineStatus status : values()) {
+            BY_VALUE.put(status.value, status);
+        }
+    }
+
+    private final String value;
+
+    PipelineStatus(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return true if the pipeline has completed (successfully or not) and will not change anymore unless retried.
+     */
+    public boolean isFinal() {
+        return FINAL_STATUSES.contains(this);
+    }
+
+    /**
+     * @return true if the pipeline has completed with a result that tells something about the state of the branch, i.e. it was successful or failed.
+     */
+    public boolean isConclusive() {
+        return this == SUCCESS || this == FAILED;
+    }
+
+    /**
+     * Determines if a change from one status to another should be reported to the user. A retried pipeline leaving its final status is
+     * reported like any other change, so the user knows the retry started.
+     *
+     * @param from the status last seen for the pipeline or null if the pipeline is new
+     * @param to   the current status of the pipeline
+     */
+    public static boolean isInterestingTransition(PipelineStatus from, PipelineStatus to) {
+        if (from == null) {
+            return INTERESTING_FOR_NEW_PIPELINES.contains(to);
+        }
+        return from != to && INTERESTING_FOR_NEW_PIPELINES.contains(to);
+    }
+
+    public static PipelineStatus fromValue(String value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+        return BY_VALUE.getOrDefault(value, UNKNOWN);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -3,6 +3,8 @@ package de.sist.gitlab.pipelinemonitor;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 import java.time.ZonedDateTime;
 import java.util.StringJoiner;
@@ -71,6 +73,7 @@ public class PipelineTo {
     }
 
     @JsonProperty("created_at")
+    @JsonSerialize(using = ToStringSerializer.class)
     public ZonedDateTime getCreatedAt() {
         return createdAt;
     }
@@ -82,6 +85,7 @@ public class PipelineTo {
     }
 
     @JsonProperty("updated_at")
+    @JsonSerialize(using = ToStringSerializer.class)
     public ZonedDateTime getUpdatedAt() {
         return updatedAt;
     }
@@ -0,0 +1,19 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import com.intellij.util.messages.Topic;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+
+import java.util.EventListener;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Published after a reload if any pipeline was added, removed or changed. Only fired for non-empty deltas.
+ */
+public interface PipelinesChangedListener extends EventListener {
+
+    Topic<PipelinesChangedListener> PIPELINES_CHANGED = Topic.create("Pipelines changed", PipelinesChangedListener.class);
+
+    void pipelinesChanged(PipelinesDelta delta, Map<Mapping, List<PipelineJobStatus>> pipelineInfos);
+
+}
@@ -0,0 +1,195 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Difference between two consecutive loads of pipelines. Pipelines are identified by their ID within a mapping.
+ */
+public class PipelinesDelta {
+
+    public static final PipelinesDelta EMPTY = new PipelinesDelta(Collections.emptyMap());
+
+    private final Map<Mapping, Map<Long, Change>> changesByMapping;
+
+    private PipelinesDelta(Map<Mapping, Map<Long, Change>> changesByMapping) {
+        this.changesByMapping = changesByMapping;
+    }
+
+    public static PipelinesDelta compute(Map<Mapping, List<PipelineJobStatus>> before, Map<Mapping, List<PipelineJobStatus>> after) {
+        final Map<Mapping, Map<Long, Change>> changesByMapping = new HashMap<>();
+        for (Map.Entry<Mapping, List<PipelineJobStatus>> entry : after.entrySet()) {
+            final Map<Long, PipelineJobStatus> previousById = new HashMap<>();
+            for (PipelineJobStatus status : before.getOrDefault(entry.getKey(), Collections.emptyList())) {
+                previousById.put(status.getId(), status);
+            }
+            final Map<Long, Change> changes = new LinkedHashMap<>();
+            for (PipelineJobStatus status : entry.getValue()) {
+                final PipelineJobStatus previous = previousById.remove(status.getId());
+                if (previous == null || isChanged(previous, status)) {
+                    changes.put(status.getId(), new Change(entry.getKey(), previous, status));
+                }
+            }
+            for (PipelineJobStatus removed : previousById.values()) {
+                changes.put(removed.getId(), new Change(entry.getKey(), removed, null));
+            }
+            if (!changes.isEmpty()) {
+                changesByMapping.put(entry.getKey(), changes);
+            }
+        }
+        for (Map.Entry<Mapping, List<PipelineJobStatus>> entry : before.entrySet()) {
+            if (after.containsKey(entry.getKey()) || entry.getValue().isEmpty()) {
+                continue;
+            }
+            final Map<Long, Change> changes = new LinkedHashMap<>();
+            for (PipelineJobStatus removed : entry.getValue()) {
+                changes.put(removed.getId(), new Change(entry.getKey(), removed, null));
+            }
+            changesByMapping.put(entry.getKey(), changes);
+        }
+        if (changesByMapping.isEmpty()) {
+            return EMPTY;
+        }
+        return new PipelinesDelta(changesByMapping);
+    }
+
+    /**
+     * Combines two consecutive deltas into one as if only the loads before the first and after the second one had been compared.
+     */
+    public static PipelinesDelta merge(PipelinesDelta older, PipelinesDelta newer) {
+        if (older.isEmpty()) {
+            return newer;
+        }
+        if (newer.isEmpty()) {
+            return older;
+        }
+        final Map<Mapping, Map<Long, Change>> changesByMapping = new HashMap<>();
+        for (Map.Entry<Mapping, Map<Long, Change>> entry : older.changesByMapping.entrySet()) {
+            changesByMapping.put(entry.getKey(), new LinkedHashMap<>(entry.getValue()));
+        }
+        for (Map.Entry<Mapping, Map<Long, Change>> entry : newer.changesByMapping.entrySet()) {
+            final Map<Long, Change> changes = changesByMapping.computeIfAbsent(entry.getKey(), x -> new LinkedHashMap<>());
+            for (Change change : entry.getValue().values()) {
+                final Change olderChange = changes.remove(change.getPipelineId());
+                final PipelineJobStatus before = olderChange != null ? olderChange.before : change.before;
+                final PipelineJobStatus after = change.after;
+                if (before == null && after == null) {
+                    //Added and removed again
+                    continue;
+                }
+                if (before != null && after != null && !isChanged(before, after)) {
+                    continue;
+                }
+                changes.put(change.getPipelineId(), new Change(entry.getKey(), before, after));
+            }
+            if (changes.isEmpty()) {
+                changesByMapping.remove(entry.getKey());
+            }
+        }
+        if (changesByMapping.isEmpty()) {
+            return EMPTY;
+        }
+        return new PipelinesDelta(changesByMapping);
+    }
+
+    private static boolean isChanged(PipelineJobStatus before, PipelineJobStatus after) {
+        return before.getStatus() != after.getStatus()
+                || before.getUpdateTime() != after.getUpdateTime()
+                || !Objects.equals(before.getStatusGroup(), after.getStatusGroup())
+                || !Objects.equals(before.getMergeRequestLink(), after.getMergeRequestLink())
+                || !Objects.equals(before.getBranchNameDisplay(), after.getBranchNameDisplay());
+    }
+
+    public boolean isEmpty() {
+        return changesByMapping.isEmpty();
+    }
+
+    public Set<Mapping> getAffectedMappings() {
+        return Collections.unmodifiableSet(changesByMapping.keySet());
+    }
+
+    public Collection<Change> getChanges(Mapping mapping) {
+        return Collections.unmodifiableCollection(changesByMapping.getOrDefault(mapping, Collections.emptyMap()).values());
+    }
+
+    public List<Change> getAdded() {
+        return collect(Change::isAdded);
+    }
+
+    public List<Change> getChanged() {
+        return collect(Change::isChanged);
+    }
+
+    public List<Change> getRemoved() {
+        return collect(Change::isRemoved);
+    }
+
+    private List<Change> collect(Predicate<Change> predicate) {
+        final List<Change> result = new ArrayList<>();
+        for (Map<Long, Change> changes : changesByMapping.values()) {
+            for (Change change : changes.values()) {
+                if (predicate.test(change)) {
+                    result.add(change);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", PipelinesDelta.class.getSimpleName() + "[", "]")
+                .add("added=" + getAdded().size())
+                .add("changed=" + getChanged().size())
+                .add("removed=" + getRemoved().size())
+                .toString();
+    }
+
+    public static class Change {
+        private final Mapping mapping;
+        private final PipelineJobStatus before;
+        private final PipelineJobStatus after;
+
+        private Change(Mapping mapping, PipelineJobStatus before, PipelineJobStatus after) {
+            this.mapping = mapping;
+            this.before = before;
+            this.after = after;
+        }
+
+        public Mapping getMapping() {
+            return mapping;
+        }
+
+        /**
+         * @return the pipeline as it was before or null if it was added
+         */
+        public PipelineJobStatus getBefore() {
+            return before;
+        }
+
+        /**
+         * @return the pipeline as it is now or null if it was removed
+         */
+        public PipelineJobStatus getAfter() {
+            return after;
+        }
+
+        public long getPipelineId() {
+            return after != null ? after.getId() : before.getId();
+        }
+
+        public boolean isAdded() {
+            return before == null;
+        }
+
+        public boolean isRemoved() {
+            return after == null;
+        }
+
+        public boolean isChanged() {
+            return before != null && after != null;
+        }
+    }
+}
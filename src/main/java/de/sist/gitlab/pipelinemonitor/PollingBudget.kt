@@ -0,0 +1,149 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.wm.IdeFocusManager
+import com.intellij.util.concurrency.AppExecutorUtil
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs the scheduled refreshes of all open projects so that together they stay within the budget of mapping refreshes per minute from the
+ * settings. When the budget is exhausted the project in the focused window is refreshed first, then the one waiting longest.
+ */
+@Service(Service.Level.APP)
+class PollingBudget : Disposable {
+
+    /**
+     * A project which refreshes its mappings regularly.
+     */
+    interface Poller {
+        val project: Project
+
+        /**
+         * @return when the next refresh is due or null if there's nothing to schedule (e.g. while paused)
+         */
+        fun getNextRefreshMillis(nowMillis: Long): Long?
+
+        /**
+         * @return the number of mappings the next refresh would load
+         */
+        fun getRefreshCost(nowMillis: Long): Int
+
+        /**
+         * Starts the refresh. Must return quickly.
+         */
+        fun refresh()
+    }
+
+    /**
+     * Token bucket which is refilled continuously with the budget per minute and holds at most one minute's budget.
+     */
+    internal class Tokens {
+        //Negative until the first refill, the bucket starts full
+        var available = -1.0
+            private set
+        private var lastRefillMillis = 0L
+
+        fun refill(nowMillis: Long, budget: Int) {
+            available = if (available < 0) {
+                budget.toDouble()
+            } else {
+                minOf(budget.toDouble(), available + (nowMillis - lastRefillMillis) * budget / 60_000.0)
+            }
+            lastRefillMillis = nowMillis
+        }
+
+        /**
+         * @return true if enough tokens were available and taken
+         */
+        fun tryTake(cost: Int): Boolean {
+            if (available < cost) {
+                return false
+            }
+            available -= cost
+            return true
+        }
+    }
+
+    private val pollers: MutableList<Poller> = ArrayList()
+    private var scheduledFuture: ScheduledFuture<*>? = null
+    private val tokens = Tokens()
+
+    @Synchronized
+    fun register(poller: Poller) {
+        if (!pollers.contains(poller)) {
+            pollers.add(poller)
+        }
+        schedule(System.currentTimeMillis())
+    }
+
+    @Synchronized
+    fun unregister(poller: Poller) {
+        pollers.remove(poller)
+    }
+
+    /**
+     * Must be called when the next refresh of a poller changed, e.g. after a refresh finished.
+     */
+    @Synchronized
+    fun reschedule() {
+        schedule(System.currentTimeMillis())
+    }
+
+    @Synchronized
+    private fun runDueRefreshes() {
+        val nowMillis = System.currentTimeMillis()
+        tokens.refill(nowMillis, getBudget())
+        pollers.removeIf { it.project.isDisposed }
+        val focusedProject = IdeFocusManager.getGlobalInstance().lastFocusedFrame?.project
+        val duePollers = pollers
+            .mapNotNull { poller -> poller.getNextRefreshMillis(nowMillis)?.takeIf { it <= nowMillis }?.let { poller to it } }
+            .sortedWith(compareBy<Pair<Poller, Long>> { it.first.project != focusedProject }.thenBy { it.second })
+            .map { it.first }
+        for (poller in duePollers) {
+            val cost = poller.getRefreshCost(nowMillis).coerceIn(1, getBudget())
+            if (!tokens.tryTake(cost)) {
+                //The others must wait so that the more important refresh is not delayed further
+                logger.debug("Polling budget exhausted. ", tokens.available, " left, ", cost, " needed for ", poller.project.name)
+                break
+            }
+            logger.debug("Refreshing ", poller.project.name, " for ", cost, " of the polling budget")
+            poller.refresh()
+        }
+        schedule(nowMillis)
+    }
+
+    private fun schedule(nowMillis: Long) {
+        scheduledFuture?.cancel(false)
+        scheduledFuture = null
+        val nextRefreshMillis = pollers.mapNotNull { it.getNextRefreshMillis(nowMillis) }.minOrNull() ?: return
+        //While the budget is exhausted due refreshes are retried when there's enough budget for at least one mapping again
+        val delayMillis = if (nextRefreshMillis <= nowMillis) 60_000L / getBudget() else nextRefreshMillis - nowMillis
+        scheduledFuture = AppExecutorUtil.getAppScheduledExecutorService()
+            .schedule({ runDueRefreshes() }, delayMillis.coerceAtLeast(MIN_DELAY_MILLIS), TimeUnit.MILLISECONDS)
+    }
+
+    private fun getBudget(): Int {
+        return PipelineViewerConfigApp.instance.maxRefreshesPerMinute.coerceAtLeast(1)
+    }
+
+    override fun dispose() {
+        scheduledFuture?.cancel(false)
+    }
+
+    companion object {
+        private val logger = Logger.getInstance(PollingBudget::class.java)
+
+        //Refreshes due at about the same time are run together
+        private const val MIN_DELAY_MILLIS = 1000L
+
+        @JvmStatic
+        val instance: PollingBudget
+            get() = ApplicationManager.getApplication().getService(PollingBudget::class.java)
+    }
+}
@@ -0,0 +1,138 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.project.Project
+import com.intellij.util.concurrency.AppExecutorUtil
+import de.sist.gitlab.pipelinemonitor.config.ConfigProvider
+import de.sist.gitlab.pipelinemonitor.config.Mapping
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigProject
+import de.sist.gitlab.pipelinemonitor.gitlab.GitlabService
+import git4idea.push.GitPushListener
+import git4idea.push.GitPushRepoResult
+import git4idea.repo.GitRepository
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Polls the pipelines of a pushed ref in short intervals after a push so that the new pipeline shows up within seconds. The intervals grow
+ * until the pipeline for the pushed commit has finished. The regular refresh is not affected.
+ */
+@Service(Service.Level.PROJECT)
+class PushPollingService(private val project: Project) : Disposable {
+
+    private val gitlabService: GitlabService = project.getService(GitlabService::class.java)
+    private val requestQueue: GitlabRequestQueue = project.getService(GitlabRequestQueue::class.java)
+
+    //Key: project ID and ref
+    private val bursts: MutableMap<String, Burst> = ConcurrentHashMap()
+
+    init {
+        project.messageBus.connect(this).subscribe(GitPushListener.TOPIC, object : GitPushListener {
+            override fun onCompleted(repository: GitRepository, pushResult: GitPushRepoResult) {
+                handlePush(repository, pushResult)
+            }
+        })
+    }
+
+    private fun handlePush(repository: GitRepository, pushResult: GitPushRepoResult) {
+        if (pushResult.type !in PUSHED_TYPES || !PipelineViewerConfigProject.getInstance(project).isEnabled) {
+            return
+        }
+        val remote = repository.remotes.firstOrNull { it.name == pushResult.targetRemote } ?: return
+        val mapping = remote.urls.firstNotNullOfOrNull { ConfigProvider.instance.getMappingByRemoteUrl(it) }
+        if (mapping == null) {
+            logger.debug("No mapping found for pushed remote ", remote.name)
+            return
+        }
+        //refs/remotes/origin/feature -> feature
+        val ref = pushResult.targetBranch.removePrefix("refs/remotes/" + remote.name + "/")
+        val localBranch = repository.branches.findLocalBranch(pushResult.sourceBranch.removePrefix("refs/heads/"))
+        val sha = localBranch?.let { repository.branches.getHash(it) }?.asString()
+        logger.debug("Starting to poll pipelines for pushed ref ", ref, " with sha ", sha, " of ", mapping.remote)
+
+        val burst = Burst(mapping, ref, sha)
+        bursts.put(mapping.gitlabProjectId + ":" + ref, burst)?.cancel()
+        burst.schedule()
+    }
+
+    override fun dispose() {
+        bursts.values.forEach { it.cancel() }
+        bursts.clear()
+    }
+
+    private inner class Burst(val mapping: Mapping, val ref: String, val sha: String?) {
+        private val started = System.currentTimeMillis()
+        private var delayMillis = INITIAL_DELAY_MILLIS
+        private var future: ScheduledFuture<*>? = null
+
+        @Synchronized
+        fun schedule() {
+            val poll = Runnable { requestQueue.submit(GitlabRequestQueue.Priority.CHECKOUT, "push:" + mapping.gitlabProjectId + ":" + ref, mapping.host) { poll() } }
+            future = AppExecutorUtil.getAppScheduledExecutorService().schedule(poll, delayMillis, TimeUnit.MILLISECONDS)
+            delayMillis = nextDelayMillis(delayMillis)
+        }
+
+        @Synchronized
+        fun cancel() {
+            future?.cancel(false)
+        }
+
+        private fun poll() {
+            if (project.isDisposed || bursts[mapping.gitlabProjectId + ":" + ref] !== this) {
+                return
+            }
+            val pipelines = try {
+                gitlabService.updatePipelinesForRef(mapping, ref) { project.getService(BackgroundUpdateService::class.java).publish(it) }
+            } catch (e: Exception) {
+                logger.debug("Unable to load pipelines for pushed ref ", ref, ": ", e.message)
+                null
+            }
+            val pushedPipeline = pipelines?.firstOrNull { isPushedPipeline(it, sha, started) }
+            val elapsed = System.currentTimeMillis() - started
+            if (isFinished(pushedPipeline, elapsed)) {
+                logger.debug("Stopping to poll pipelines for pushed ref ", ref, " after ", elapsed, "ms. Pipeline: ", pushedPipeline)
+                bursts.remove(mapping.gitlabProjectId + ":" + ref, this)
+            } else {
+                schedule()
+            }
+        }
+    }
+
+    companion object {
+        private val logger = Logger.getInstance(PushPollingService::class.java)
+
+        private val PUSHED_TYPES = setOf(GitPushRepoResult.Type.SUCCESS, GitPushRepoResult.Type.NEW_BRANCH, GitPushRepoResult.Type.FORCED)
+        private const val INITIAL_DELAY_MILLIS = 2000L
+        private const val BACKOFF_FACTOR = 1.5
+        private const val MAX_DELAY_MILLIS = 20_000L
+
+        //If gitlab doesn't create a pipeline for the push (e.g. no CI config for the branch) we stop after a while
+        private const val MAX_WAIT_FOR_PIPELINE_MILLIS = 2 * 60 * 1000L
+        private const val MAX_DURATION_MILLIS = 30 * 60 * 1000L
+
+        internal fun nextDelayMillis(delayMillis: Long): Long {
+            return (delayMillis * BACKOFF_FACTOR).toLong().coerceAtMost(MAX_DELAY_MILLIS)
+        }
+
+        /**
+         * @return true if polling can stop because the pipeline for the push has finished, none was created or polling took too long
+         */
+        internal fun isFinished(pushedPipeline: PipelineTo?, elapsedMillis: Long): Boolean {
+            if (pushedPipeline != null && PipelineStatus.fromValue(pushedPipeline.status).isFinal) {
+                return true
+            }
+            return pushedPipeline == null && elapsedMillis > MAX_WAIT_FOR_PIPELINE_MILLIS || elapsedMillis > MAX_DURATION_MILLIS
+        }
+
+        internal fun isPushedPipeline(pipeline: PipelineTo, sha: String?, startedMillis: Long): Boolean {
+            if (sha != null) {
+                return pipeline.sha == sha
+            }
+            //Clocks of gitlab and the local machine may differ a bit
+            return pipeline.createdAt != null && pipeline.createdAt.toInstant().toEpochMilli() > startedMillis - 60_000
+        }
+    }
+}
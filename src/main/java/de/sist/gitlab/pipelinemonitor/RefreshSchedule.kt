@@ -0,0 +1,120 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.project.Project
+import de.sist.gitlab.pipelinemonitor.config.Mapping
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp
+import de.sist.gitlab.pipelinemonitor.git.GitService
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+
+/**
+ * Decides when each mapping is refreshed next. A mapping with its own refresh delay is refreshed with that. Otherwise, if automatic tiers are
+ * enabled, a mapping is hot while it has unfinished or recently updated pipelines or recent local git changes and refreshed with the refresh
+ * delay from the settings. All other mappings are cold and refreshed [COLD_FACTOR] times less often.
+ */
+@Service(Service.Level.PROJECT)
+class RefreshSchedule(private val project: Project) {
+
+    private val nextRefreshMillis: MutableMap<Mapping, Long> = ConcurrentHashMap()
+    private val refreshDelaySeconds: MutableMap<Mapping, Int> = ConcurrentHashMap()
+    private val lastRefreshMillis: MutableMap<Mapping, Long> = ConcurrentHashMap()
+
+    /**
+     * @return the mappings which are due for a refresh. Mappings which weren't refreshed yet are always due
+     */
+    fun getDueMappings(mappings: Collection<Mapping>, nowMillis: Long): Set<Mapping> {
+        nextRefreshMillis.keys.retainAll(mappings.toSet())
+        refreshDelaySeconds.keys.retainAll(mappings.toSet())
+        lastRefreshMillis.keys.retainAll(mappings.toSet())
+        return mappings.filterTo(HashSet()) { (nextRefreshMillis[it] ?: 0) <= nowMillis }
+    }
+
+    /**
+     * Schedules the next refresh of the mappings.
+     *
+     * @param snapshot       the snapshot containing the pipelines just loaded for the mappings
+     * @param slowdownFactor the refresh delays are multiplied by this, e.g. while the IDE is in the background
+     */
+    fun refreshed(mappings: Collection<Mapping>, snapshot: PipelineSnapshot, slowdownFactor: Int, nowMillis: Long) {
+        val gitService = project.getService(GitService::class.java)
+        for (mapping in mappings) {
+            val delaySeconds = computeRefreshDelaySeconds(mapping, snapshot.pipelineInfos[mapping].orEmpty(), gitService.getLastChangeMillis(mapping), nowMillis)
+            refreshDelaySeconds[mapping] = delaySeconds
+            lastRefreshMillis[mapping] = nowMillis
+            nextRefreshMillis[mapping] = nowMillis + BackgroundUpdateService.jitteredDelayMillis(delaySeconds * slowdownFactor, ThreadLocalRandom.current())
+            logger.debug("Refreshing ", mapping.remote, " again in ", delaySeconds * slowdownFactor, "s")
+        }
+    }
+
+    /**
+     * @param isIncluded only these mappings are considered
+     * @return when the next mapping is due or after the refresh delay from the settings if no mapping was refreshed yet
+     */
+    fun getNextRefreshMillis(nowMillis: Long, isIncluded: (Mapping) -> Boolean = { true }): Long {
+        return nextRefreshMillis.filterKeys(isIncluded).values.minOrNull() ?: (nowMillis + PipelineViewerConfigApp.instance.refreshDelay * 1000L)
+    }
+
+    /**
+     * Makes the mappings due which weren't refreshed for longer than their refresh delay because the refreshes were slowed down.
+     *
+     * @return true if any mapping was made due
+     */
+    fun makeOverdueMappingsDue(nowMillis: Long): Boolean {
+        var anyOverdue = false
+        for ((mapping, lastRefresh) in lastRefreshMillis) {
+            val nextRefresh = nextRefreshMillis[mapping] ?: continue
+            if (nextRefresh > nowMillis && nowMillis - lastRefresh >= getRefreshDelaySeconds(mapping) * 1000L) {
+                nextRefreshMillis[mapping] = nowMillis
+                anyOverdue = true
+            }
+        }
+        return anyOverdue
+    }
+
+    /**
+     * @return the current delay between the refreshes of the mapping (without any slowdown)
+     */
+    fun getRefreshDelaySeconds(mapping: Mapping): Int {
+        return refreshDelaySeconds[mapping] ?: getConfiguredRefreshDelaySeconds(mapping)
+    }
+
+    /**
+     * Makes all mappings due, e.g. after the settings were changed.
+     */
+    fun reset() {
+        nextRefreshMillis.clear()
+        refreshDelaySeconds.clear()
+        lastRefreshMillis.clear()
+    }
+
+    companion object {
+        private val logger = Logger.getInstance(RefreshSchedule::class.java)
+
+        private const val COLD_FACTOR = 10
+
+        //A mapping stays hot this long after the last pipeline update or local change
+        private const val HOT_DURATION_MILLIS = 30 * 60 * 1000L
+
+        private fun getConfiguredRefreshDelaySeconds(mapping: Mapping): Int {
+            val mappingRefreshDelay = mapping.refreshDelay
+            return if (mappingRefreshDelay != null && mappingRefreshDelay > 0) mappingRefreshDelay else PipelineViewerConfigApp.instance.refreshDelay
+        }
+
+        internal fun computeRefreshDelaySeconds(mapping: Mapping, pipelines: List<PipelineJobStatus>, lastLocalChangeMillis: Long, nowMillis: Long): Int {
+            if (mapping.refreshDelay != null || !PipelineViewerConfigApp.instance.isAutomaticRefreshTiers) {
+                return getConfiguredRefreshDelaySeconds(mapping)
+            }
+            val refreshDelay = PipelineViewerConfigApp.instance.refreshDelay
+            return if (isHot(pipelines, lastLocalChangeMillis, nowMillis)) refreshDelay else refreshDelay * COLD_FACTOR
+        }
+
+        internal fun isHot(pipelines: List<PipelineJobStatus>, lastLocalChangeMillis: Long, nowMillis: Long): Boolean {
+            if (nowMillis - lastLocalChangeMillis < HOT_DURATION_MILLIS) {
+                return true
+            }
+            return pipelines.any { !it.status.isFinal || nowMillis - it.updateTime < HOT_DURATION_MILLIS }
+        }
+    }
+}
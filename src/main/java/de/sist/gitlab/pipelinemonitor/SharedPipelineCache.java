@@ -0,0 +1,273 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelines and merge requests shared between the IDE processes running on this machine. For every key (e.g. the pipelines of a gitlab
+ * project) one process (the leader) loads the data and writes it to a memory mapped file, the other processes read it from there. The leader
+ * is the process holding the lock on the key's lock file, so when it exits or stops using the key another process takes over.
+ * <p>
+ * The mapped file starts with a sequence number which is odd while the leader writes (a seqlock), followed by the time of the last write, the
+ * length of the data and the data as JSON.
+ */
+public class SharedPipelineCache implements Disposable {
+
+    private static final Logger logger = Logger.getInstance(SharedPipelineCache.class);
+
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int DATA_OFFSET = 20;
+    private static final int MAX_DATA_LENGTH = 4 * 1024 * 1024;
+    private static final int MAX_READ_ATTEMPTS = 100;
+    private static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    static final TypeReference<List<PipelineTo>> PIPELINES = new TypeReference<>() {
+    };
+    //Used for keys which were only written so far
+    private static final long DEFAULT_RELEASE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long RELEASE_CHECK_INTERVAL_SECONDS = 60;
+
+    private final Map<String, SharedFile> files = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> releaseCheck = AppExecutorUtil.getAppScheduledExecutorService()
+            .scheduleWithFixedDelay(this::releaseUnusedFiles, RELEASE_CHECK_INTERVAL_SECONDS, RELEASE_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    public static SharedPipelineCache getInstance() {
+        return ApplicationManager.getApplication().getService(SharedPipelineCache.class);
+    }
+
+    /**
+     * @param key          identifies the pipelines, e.g. host and project ID
+     * @param maxAgeMillis data written longer ago is ignored (e.g. because the leader doesn't refresh this project anymore)
+     * @return the pipelines written by the leader or null if this process is the leader or there's no current data
+     */
+    public List<PipelineTo> readIfFollower(String key, long maxAgeMillis) {
+        return readIfFollower(key, maxAgeMillis, PIPELINES);
+    }
+
+    /**
+     * @param key          identifies the data, e.g. host, project ID and source branches of merge requests
+     * @param maxAgeMillis data written longer ago is ignored (e.g. because the leader doesn't refresh this key anymore). The leader releases
+     *                     the key when it wasn't used for that long
+     * @return the data written by the leader or null if this process is the leader or there's no current data
+     */
+    public <T> T readIfFollower(String key, long maxAgeMillis, TypeReference<T> type) {
+        try {
+            final SharedFile file = getFile(key);
+            file.used(maxAgeMillis);
+            if (file.isLeader()) {
+                return null;
+            }
+            return file.read(maxAgeMillis, type);
+        } catch (IOException e) {
+            logger.info("Unable to read shared data for " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the data for the other processes if this process is the leader.
+     */
+    public void writeIfLeader(String key, Object value) {
+        try {
+            final SharedFile file = getFile(key);
+            file.used(0);
+            if (file.isLeader()) {
+                file.write(value);
+            }
+        } catch (IOException e) {
+            logger.info("Unable to write shared data for " + key, e);
+        }
+    }
+
+    /**
+     * Gives up leading the keys, e.g. because the project using them was closed. Another process which still uses them takes over.
+     */
+    public void release(Collection<String> keys) {
+        for (String key : keys) {
+            final SharedFile file = files.remove(key);
+            if (file != null) {
+                logger.debug("Releasing shared data for ", key);
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Releases the keys this process doesn't poll anymore, e.g. because the mapping was removed or the refreshes are paused. Otherwise the
+     * other processes would wait for data which is never written.
+     */
+    private void releaseUnusedFiles() {
+        final long nowMillis = System.currentTimeMillis();
+        release(files.entrySet().stream().filter(x -> x.getValue().isUnused(nowMillis)).map(Map.Entry::getKey).toList());
+    }
+
+    private SharedFile getFile(String key) throws IOException {
+        final SharedFile existing = files.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final File folder = new File(PathManager.getSystemPath(), "gitlabPipelineViewer/sharedCache");
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create folder " + folder);
+        }
+        final String fileName = Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+        final SharedFile file = new SharedFile(new File(folder, fileName + ".lock"), new File(folder, fileName + ".cache"));
+        final SharedFile previous = files.putIfAbsent(key, file);
+        if (previous != null) {
+            file.close();
+            return previous;
+        }
+        return file;
+    }
+
+    @Override
+    public void dispose() {
+        releaseCheck.cancel(false);
+        for (SharedFile file : files.values()) {
+            file.close();
+        }
+        files.clear();
+    }
+
+    static class SharedFile {
+
+        private final FileChannel lockChannel;
+        private final FileChannel dataChannel;
+        private final MappedByteBuffer buffer;
+        private FileLock lock;
+        private boolean closed;
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+        private volatile long releaseAfterMillis = DEFAULT_RELEASE_AFTER_MILLIS;
+
+        SharedFile(File lockFile, File dataFile) throws IOException {
+            lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            dataChannel = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + MAX_DATA_LENGTH);
+        }
+
+        /**
+         * Tries to become the leader if there's none. The lock is released by the OS when the leading process exits.
+         */
+        synchronized boolean isLeader() throws IOException {
+            if (closed) {
+                return false;
+            }
+            if (lock != null && lock.isValid()) {
+                return true;
+            }
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock != null) {
+                logger.debug("Became leader for ", this);
+            }
+            return lock != null;
+        }
+
+        /**
+         * @param maxAgeMillis how long the data is used by followers, 0 if unknown
+         */
+        void used(long maxAgeMillis) {
+            lastUsedMillis = System.currentTimeMillis();
+            if (maxAgeMillis > 0) {
+                releaseAfterMillis = maxAgeMillis;
+            }
+        }
+
+        boolean isUnused(long nowMillis) {
+            return nowMillis - lastUsedMillis > releaseAfterMillis;
+        }
+
+        synchronized void write(Object value) throws IOException {
+            if (closed) {
+                return;
+            }
+            final byte[] data = Jackson.OBJECT_MAPPER.writeValueAsBytes(value);
+            if (data.length > MAX_DATA_LENGTH) {
+                logger.debug("Not sharing ", data.length, " bytes of data");
+                return;
+            }
+            //Always odd while writing, even if a previous leader died while writing
+            final long sequence = ((long) SEQUENCE.getVolatile(buffer, SEQUENCE_OFFSET) + 1) | 1;
+            SEQUENCE.setVolatile(buffer, SEQUENCE_OFFSET, sequence);
+            //The plain writes of the data must not become visible before the odd sequence
+            VarHandle.releaseFence();
+            buffer.put(DATA_OFFSET, data);
+            buffer.putInt(LENGTH_OFFSET, data.length);
+            buffer.putLong(TIMESTAMP_OFFSET, System.currentTimeMillis());
+            SEQUENCE.setVolatile(buffer, SEQUENCE_OFFSET, sequence + 1);
+        }
+
+        <T> T read(long maxAgeMillis, TypeReference<T> type) throws IOException {
+            for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+                final long sequenceBefore = (long) SEQUENCE.getVolatile(buffer, SEQUENCE_OFFSET);
+                if (sequenceBefore == 0) {
+                    //Nothing written yet
+                    return null;
+                }
+                if ((sequenceBefore & 1) == 1) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                final long timestamp = buffer.getLong(TIMESTAMP_OFFSET);
+                final int length = buffer.getInt(LENGTH_OFFSET);
+                if (length <= 0 || length > MAX_DATA_LENGTH) {
+                    continue;
+                }
+                final byte[] data = new byte[length];
+                buffer.get(DATA_OFFSET, data);
+                //The plain reads of the data must not be moved after the check of the sequence
+                VarHandle.acquireFence();
+                if ((long) SEQUENCE.getVolatile(buffer, SEQUENCE_OFFSET) != sequenceBefore) {
+                    continue;
+                }
+                if (System.currentTimeMillis() - timestamp > maxAgeMillis) {
+                    logger.debug("Shared data is outdated");
+                    return null;
+                }
+                return Jackson.OBJECT_MAPPER.readValue(data, type);
+            }
+            logger.debug("Unable to read consistent shared data");
+            return null;
+        }
+
+        synchronized void close() {
+            closed = true;
+            try {
+                if (lock != null) {
+                    lock.release();
+                }
+                lockChannel.close();
+                dataChannel.close();
+            } catch (IOException e) {
+                logger.debug(e);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ class StartupInitialization : ProjectActivity {
         project.getService(NotifierService::class.java)
         project.getService(LightsControl::class.java)
         project.getService(BackgroundUpdateService::class.java)
+        project.getService(PushPollingService::class.java)
         logger.debug("Running startup initialization (reloading git repositories)")
         project.getService(GitService::class.java).reloadGitRepositories()
     }
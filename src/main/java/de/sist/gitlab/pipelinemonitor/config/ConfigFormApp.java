@@ -60,6 +60,8 @@ public class ConfigFormApp {
     private JTextField textFieldAlwaysMonitor;
     private JCheckBox checkBoxShowProgressBar;
     private JTextField refreshDelay;
+    private JCheckBox checkBoxLatestPipelinePerRef;
+    private JCheckBox checkBoxAutomaticRefreshTiers;
     private final CollectionListModel<String> mappingsModel = new CollectionListModel<>();
     private final CollectionListModel<String> ignoredRemotesModel = new CollectionListModel<>();
 
@@ -153,6 +155,8 @@ public class ConfigFormApp {
         config.setOnlyForRemoteBranchesExist(checkBoxForBranchesWhichExist.isSelected());
         config.setAlwaysMonitorHostsFromString(textFieldAlwaysMonitor.getText());
         config.setShowProgressBar(checkBoxShowProgressBar.isSelected());
+        config.setLoadLatestPipelinePerRef(checkBoxLatestPipelinePerRef.isSelected());
+        config.setAutomaticRefreshTiers(checkBoxAutomaticRefreshTiers.isSelected());
 
         List<String> statusesToWatch = new ArrayList<>();
 
@@ -186,6 +190,8 @@ public class ConfigFormApp {
         checkBoxForBranchesWhichExist.setSelected(config.isOnlyForRemoteBranchesExist());
         textFieldAlwaysMonitor.setText(config.getAlwaysMonitorHostsAsString());
         checkBoxShowProgressBar.setSelected(config.isShowProgressBar());
+        checkBoxLatestPipelinePerRef.setSelected(config.isLoadLatestPipelinePerRef());
+        checkBoxAutomaticRefreshTiers.setSelected(config.isAutomaticRefreshTiers());
 
         mappingsModel.replaceAll(config.mappings.stream()
                 .map(Mapping::toSerializable)
@@ -216,6 +222,8 @@ public class ConfigFormApp {
                || isDifferentNumber(refreshDelay.getText(), config.refreshDelay)
                || !Objects.equals(config.getAlwaysMonitorHostsAsString(), textFieldAlwaysMonitor.getText())
                || config.isShowProgressBar() != checkBoxShowProgressBar.isSelected()
+               || config.isLoadLatestPipelinePerRef() != checkBoxLatestPipelinePerRef.isSelected()
+               || config.isAutomaticRefreshTiers() != checkBoxAutomaticRefreshTiers.isSelected()
                 ;
     }
 
@@ -242,7 +250,7 @@ public class ConfigFormApp {
 
         ToolbarDecorator decorator = ToolbarDecorator.createDecorator(mappingList, mappingsModel);
         decorator.setAddAction(anActionButton -> {
-            String newMapping = Messages.showInputDialog("Please enter the mapping using the format '<git remote>=<Project ID>'.", "New Mapping", null);
+            String newMapping = Messages.showInputDialog("Please enter the mapping using the format '<git remote>;<host>;<project path>;<project ID>;<project name>[;<refresh interval in seconds>]'.", "New Mapping", null);
             if (newMapping != null) {
                 mappingsModel.add(newMapping);
             }
@@ -258,7 +266,7 @@ public class ConfigFormApp {
                 return;
             }
             final String selectedValueBefore = mappingList.getSelectedValuesList().get(0);
-            String newValue = Messages.showInputDialog("Please enter the new value (format '<git remote>=<Project ID>').", "Change Mapping", null, selectedValueBefore, null);
+            String newValue = Messages.showInputDialog("Please enter the new value (format '<git remote>;<host>;<project path>;<project ID>;<project name>[;<refresh interval in seconds>]').", "Change Mapping", null, selectedValueBefore, null);
             if (newValue != null) {
                 mappingsModel.remove(selectedValueBefore);
                 mappingsModel.add(newValue);
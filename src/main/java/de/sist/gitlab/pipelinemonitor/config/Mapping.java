@@ -5,6 +5,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
+import com.google.common.primitives.Ints;
 
 /**
  */
@@ -15,6 +16,8 @@ public class Mapping {
     private String projectPath;
     private String gitlabProjectId;
     private String projectName;
+    //Seconds between refreshes of this mapping. Null to use the refresh delay from the settings
+    private Integer refreshDelay;
 
     public Mapping() {
     }
@@ -70,8 +73,17 @@ public class Mapping {
         this.projectName = projectName;
     }
 
+    public Integer getRefreshDelay() {
+        return refreshDelay;
+    }
+
+    public void setRefreshDelay(Integer refreshDelay) {
+        this.refreshDelay = refreshDelay;
+    }
+
     public String toSerializable() {
-        return Joiner.on(";").useForNull("").join(remote, host, projectPath, gitlabProjectId, projectName);
+        final String serialized = Joiner.on(";").useForNull("").join(remote, host, projectPath, gitlabProjectId, projectName);
+        return refreshDelay == null ? serialized : serialized + ";" + refreshDelay;
     }
 
     public static Mapping toMapping(String string) {
@@ -82,11 +94,27 @@ public class Mapping {
         mapping.setProjectPath(split[2]);
         mapping.setGitlabProjectId(split[3]);
         mapping.setProjectName(split[4]);
+        if (split.length > 5) {
+            //Invalid values are ignored, the refresh delay from the settings is used instead
+            final Integer refreshDelay = Ints.tryParse(split[5].trim());
+            mapping.setRefreshDelay(refreshDelay != null && refreshDelay > 0 ? refreshDelay : null);
+        }
         return mapping;
     }
 
     public static boolean isValid(String string) {
-        return string != null && string.split(";").length == 5;
+        if (string == null) {
+            return false;
+        }
+        final String[] split = string.split(";");
+        if (split.length == 5) {
+            return true;
+        }
+        if (split.length != 6) {
+            return false;
+        }
+        final Integer refreshDelay = Ints.tryParse(split[5].trim());
+        return refreshDelay != null && refreshDelay > 0;
     }
 
     public boolean isValid() {
@@ -106,12 +134,12 @@ public class Mapping {
             return false;
         }
         Mapping mapping = (Mapping) o;
-        return Objects.equal(remote, mapping.remote) && Objects.equal(host, mapping.host) && Objects.equal(projectPath, mapping.projectPath) && Objects.equal(gitlabProjectId, mapping.gitlabProjectId) && Objects.equal(projectName, mapping.projectName);
+        return Objects.equal(remote, mapping.remote) && Objects.equal(host, mapping.host) && Objects.equal(projectPath, mapping.projectPath) && Objects.equal(gitlabProjectId, mapping.gitlabProjectId) && Objects.equal(projectName, mapping.projectName) && Objects.equal(refreshDelay, mapping.refreshDelay);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(remote, host, projectPath, gitlabProjectId, projectName);
+        return Objects.hashCode(remote, host, projectPath, gitlabProjectId, projectName, refreshDelay);
     }
 
     @Override
@@ -122,6 +150,7 @@ public class Mapping {
                 .add("projectPath", projectPath)
                 .add("gitlabProjectId", gitlabProjectId)
                 .add("projectName", projectName)
+                .add("refreshDelay", refreshDelay)
                 .toString();
     }
 }
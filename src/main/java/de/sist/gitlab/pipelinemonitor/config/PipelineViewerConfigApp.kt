@@ -73,6 +73,20 @@ class PipelineViewerConfigApp : PersistentStateComponent<PipelineViewerConfigApp
     @JvmField
     var refreshDelay: Int = 30
 
+    //Load only the latest pipeline per branch and tag instead of the latest 200 pipelines of all refs
+    var isLoadLatestPipelinePerRef: Boolean = false
+
+    //Refresh mappings without recent activity less often. Refresh intervals set for a mapping take precedence
+    var isAutomaticRefreshTiers: Boolean = false
+
+    //Mapping refreshes per minute of all open projects together. Refreshes triggered by the user don't count
+    @JvmField
+    var maxRefreshesPerMinute: Int = 60
+
+    //Plugin work on the EDT taking longer than this is logged as warning. 0 disables the warning
+    @JvmField
+    var edtWarningThresholdMillis: Int = 200
+
     val alwaysMonitorHostsAsString: String
         get() = listToString(alwaysMonitorHosts)
 
@@ -0,0 +1,36 @@
+package de.sist.gitlab.pipelinemonitor.debug;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.ide.CopyPasteManager;
+import de.sist.gitlab.pipelinemonitor.ConflatingDelivery;
+import de.sist.gitlab.pipelinemonitor.metrics.PluginMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.datatransfer.StringSelection;
+import java.util.Map;
+
+/**
+ * Writes the collected timings to the log and copies them to the clipboard so they can be attached to bug reports.
+ */
+public class DumpMetricsAction extends AnAction {
+
+    private static final Logger logger = Logger.getInstance(DumpMetricsAction.class);
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        final StringBuilder builder = new StringBuilder(PluginMetrics.dump());
+        for (Map.Entry<String, ConflatingDelivery.Statistics> entry : ConflatingDelivery.getStatistics().entrySet()) {
+            builder.append("delivery.").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        logger.info("Plugin metrics:\n" + builder);
+        CopyPasteManager.getInstance().setContents(new StringSelection(builder.toString()));
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -5,18 +5,17 @@ import com.intellij.openapi.actionSystem.ActionUpdateThread;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import de.sist.gitlab.pipelinemonitor.PipelineJobStatus;
+import de.sist.gitlab.pipelinemonitor.PipelineStatus;
 import de.sist.gitlab.pipelinemonitor.notifier.NotifierService;
 import org.jetbrains.annotations.NotNull;
 
-import java.time.ZonedDateTime;
-
 /**
  * @author PPI AG
  */
 public class ShowTestNotificationAction extends AnAction {
     @Override
     public void actionPerformed(@NotNull AnActionEvent e) {
-        e.getProject().getService(NotifierService.class).showBalloonForStatus(new PipelineJobStatus(1L, "123", "123", ZonedDateTime.now(), ZonedDateTime.now(), "failed", "http://www.google.de", "source"), 0);
+        e.getProject().getService(NotifierService.class).showBalloonForStatus(new PipelineJobStatus(1L, "123", "123", System.currentTimeMillis(), System.currentTimeMillis(), PipelineStatus.FAILED, "http://www.google.de/", "source"), 0);
     }
 
     @Override
@@ -0,0 +1,12 @@
+package de.sist.gitlab.pipelinemonitor.git;
+
+import com.intellij.util.messages.Topic;
+import git4idea.repo.GitRepository;
+
+public interface BranchCheckedOutListener {
+
+    Topic<BranchCheckedOutListener> BRANCH_CHECKED_OUT = Topic.create("Branch checked out", BranchCheckedOutListener.class);
+
+    void branchCheckedOut(GitRepository repository, String branchName);
+
+}
@@ -10,6 +10,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.messages.MessageBus;
+import de.sist.gitlab.pipelinemonitor.ConflatingDelivery;
 import de.sist.gitlab.pipelinemonitor.ReloadListener;
 import de.sist.gitlab.pipelinemonitor.config.ConfigProvider;
 import de.sist.gitlab.pipelinemonitor.config.Mapping;
@@ -29,6 +30,7 @@ import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -41,6 +43,10 @@ public class GitService {
     private List<GitRepository> nonIgnoredRepositories = new ArrayList<>();
     private final Project project;
     private final MessageBus messageBus;
+    //Current branch per repository root, used to detect checkouts
+    private final Map<String, String> currentBranches = new ConcurrentHashMap<>();
+    //Time of the last change (commit, checkout, ...) per repository root
+    private final Map<String, Long> lastChangeMillis = new ConcurrentHashMap<>();
 
     public GitService(Project project) {
         this.project = project;
@@ -51,9 +57,11 @@ public class GitService {
         });
         project.getMessageBus().connect().subscribe(GitRepository.GIT_REPO_CHANGE, (GitRepositoryChangeListener) repository -> {
             logger.debug("Retrieved event GIT_REPO_CHANGE");
+            lastChangeMillis.put(repository.getRoot().getPath(), System.currentTimeMillis());
             fireGitEventIfReposChanged();
+            fireEventIfBranchCheckedOut(repository);
         });
-        project.getMessageBus().connect().subscribe(ReloadListener.RELOAD, (ReloadListener) pipelineInfos -> fireGitEventIfReposChanged());
+        project.getMessageBus().connect().subscribe(ReloadListener.RELOAD, ConflatingDelivery.reload(project, "git", pipelineInfos -> fireGitEventIfReposChanged()));
     }
 
     private void fireGitEventIfReposChanged() {
@@ -63,6 +71,11 @@ public class GitService {
         if (!allGitRepositories.equals(newAllGitRepositories) || !nonIgnoredRepositories.equals(newNonIgnoredGitRepositories)) {
             allGitRepositories = newAllGitRepositories;
             nonIgnoredRepositories = newNonIgnoredGitRepositories;
+            for (GitRepository repository : newAllGitRepositories) {
+                if (repository.getCurrentBranchName() != null) {
+                    currentBranches.putIfAbsent(repository.getRoot().getPath(), repository.getCurrentBranchName());
+                }
+            }
             logger.debug("Firing event GIT_INITIALIZED. Number of git repositories: ", newAllGitRepositories.size(), ". Non-ignored: ", newNonIgnoredGitRepositories.size());
 
             if (!messageBus.isDisposed()) {
@@ -73,6 +86,23 @@ public class GitService {
         }
     }
 
+    private void fireEventIfBranchCheckedOut(GitRepository repository) {
+        final String branchName = repository.getCurrentBranchName();
+        if (branchName == null) {
+            //Detached HEAD, nothing to load
+            return;
+        }
+        final String previousBranchName = currentBranches.put(repository.getRoot().getPath(), branchName);
+        //The first event only tells us the branch which was checked out on startup. Its pipelines are loaded by the regular refresh
+        if (previousBranchName == null || previousBranchName.equals(branchName)) {
+            return;
+        }
+        logger.debug("Branch ", branchName, " checked out in ", repository, ". Previous branch: ", previousBranchName);
+        if (!messageBus.isDisposed()) {
+            messageBus.syncPublisher(BranchCheckedOutListener.BRANCH_CHECKED_OUT).branchCheckedOut(repository, branchName);
+        }
+    }
+
     private List<GitRepository> filterNonIgnoredRepos(List<GitRepository> gitRepositories) {
         return gitRepositories.stream().filter(x ->
                 x.getRemotes().stream().anyMatch(gitRemote ->
@@ -123,6 +153,17 @@ public class GitService {
         return getAllGitRepositories().stream().filter(repo -> repo.getRemotes().stream().anyMatch(remote -> remote.getUrls().stream().anyMatch(x -> x.equals(url)))).findFirst().orElse(null);
     }
 
+    /**
+     * @return the time of the last change in the repository of the mapping since the project was opened or 0 if there was none
+     */
+    public long getLastChangeMillis(Mapping mapping) {
+        final GitRepository gitRepository = getRepositoryByRemoteUrl(mapping.getRemote());
+        if (gitRepository == null) {
+            return 0;
+        }
+        return lastChangeMillis.getOrDefault(gitRepository.getRoot().getPath(), 0L);
+    }
+
     public @NotNull List<String> getTags(GitRepository gitRepository) {
         logger.debug("Loading tags for ", gitRepository);
         if (gitRepository == null) {
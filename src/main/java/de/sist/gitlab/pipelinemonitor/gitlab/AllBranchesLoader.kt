@@ -0,0 +1,86 @@
+package de.sist.gitlab.pipelinemonitor.gitlab
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.intellij.openapi.diagnostic.Logger
+import de.sist.gitlab.pipelinemonitor.Jackson
+import de.sist.gitlab.pipelinemonitor.PipelineJobStatus
+import de.sist.gitlab.pipelinemonitor.PipelineStatus
+import de.sist.gitlab.pipelinemonitor.config.ConfigProvider
+import de.sist.gitlab.pipelinemonitor.config.Mapping
+import org.apache.http.client.utils.URIBuilder
+import java.io.IOException
+import java.time.ZonedDateTime
+import java.time.format.DateTimeFormatter
+
+/**
+ * Loads the remote branches of a project page by page together with the latest pipeline of each branch. Used for the "all branches" mode
+ * of the tool window where the branches of large repositories must not all be kept in memory.
+ */
+object AllBranchesLoader {
+    private val logger = Logger.getInstance(AllBranchesLoader::class.java)
+
+    class Page(@JvmField val branches: List<BranchPipeline>, @JvmField val total: Int)
+
+    /**
+     * @param pipeline the latest pipeline of the branch or null if there is none
+     */
+    class BranchPipeline(@JvmField val branchName: String, @JvmField val pipeline: PipelineJobStatus?)
+
+    /**
+     * @param search only branches containing this are returned (searched by gitlab)
+     * @param page   starting with 1
+     */
+    @JvmStatic
+    @Throws(IOException::class, GitlabService.LoginException::class)
+    fun loadPage(mapping: Mapping, search: String?, page: Int, perPage: Int): Page {
+        val uriBuilder = URIBuilder(mapping.host + "/api/v4/projects/" + mapping.gitlabProjectId + "/repository/branches")
+            .addParameter("page", page.toString())
+            .addParameter("per_page", perPage.toString())
+        if (!search.isNullOrEmpty()) {
+            uriBuilder.addParameter("search", search)
+        }
+        val token = ConfigProvider.getToken(mapping)
+        var totalHeader: String? = null
+        val json = GitlabService.makeApiCall(uriBuilder.build().toString(), token) { totalHeader = it.getHeaderField("X-Total") }
+        val branchNames = Jackson.OBJECT_MAPPER.readTree(json).map { it.path("name").asText() }
+        val total = totalHeader?.toIntOrNull() ?: estimateTotal(page, perPage, branchNames.size)
+        logger.debug("Loaded page ", page, " with ", branchNames.size, " branches of ", total, " for ", mapping.remote)
+
+        val pipelineNodes = GraphQl.makeLatestPipelinesCall(mapping.host, token, mapping.projectPath, branchNames)
+        val pipelineLinkBase = mapping.host + "/" + mapping.projectPath + "/-/pipelines/"
+        val branches = branchNames.map { branchName ->
+            BranchPipeline(branchName, pipelineNodes[branchName]?.let { toPipeline(it, branchName, mapping, pipelineLinkBase) })
+        }
+        return Page(branches, total)
+    }
+
+    /**
+     * Gitlab omits the total for very large results. In that case assume there's another page as long as the current one is full.
+     */
+    internal fun estimateTotal(page: Int, perPage: Int, loadedCount: Int): Int {
+        return (page - 1) * perPage + loadedCount + (if (loadedCount == perPage) perPage else 0)
+    }
+
+    internal fun toPipeline(node: JsonNode, ref: String, mapping: Mapping, pipelineLinkBase: String): PipelineJobStatus {
+        //gid://gitlab/Ci::Pipeline/123 -> 123
+        val id = node.path("id").asText()
+        return PipelineJobStatus(
+            id.substring(id.lastIndexOf("/") + 1).toLong(),
+            ref,
+            mapping.gitlabProjectId,
+            parseTime(node.path("createdAt").asText(null)),
+            parseTime(node.path("updatedAt").asText(null)),
+            //GraphQL returns the status in upper case
+            PipelineStatus.fromValue(node.path("status").asText("").lowercase()),
+            pipelineLinkBase,
+            null
+        )
+    }
+
+    private fun parseTime(value: String?): Long {
+        if (value == null) {
+            return 0
+        }
+        return GitlabService.toEpochMillis(ZonedDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME))
+    }
+}
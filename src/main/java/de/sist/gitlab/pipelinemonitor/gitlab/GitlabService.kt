@@ -2,6 +2,8 @@ package de.sist.gitlab.pipelinemonitor.gitlab
 
 import com.fasterxml.jackson.core.type.TypeReference
 import com.google.common.base.Strings
+import com.google.common.collect.Interner
+import com.google.common.collect.Interners
 import com.intellij.credentialStore.generateServiceName
 import com.intellij.notification.NotificationGroupManager
 import com.intellij.notification.NotificationType
@@ -15,6 +17,7 @@ import com.intellij.util.io.HttpRequests
 import de.sist.gitlab.pipelinemonitor.*
 import de.sist.gitlab.pipelinemonitor.config.*
 import de.sist.gitlab.pipelinemonitor.git.GitService
+import de.sist.gitlab.pipelinemonitor.gitlab.mapping.Data
 import de.sist.gitlab.pipelinemonitor.gitlab.mapping.Edge
 import de.sist.gitlab.pipelinemonitor.gitlab.mapping.MergeRequest
 import de.sist.gitlab.pipelinemonitor.gitlab.mapping.PipelineNode
@@ -30,84 +33,208 @@ import org.apache.commons.lang3.StringUtils
 import org.apache.commons.lang3.tuple.Pair
 import org.apache.http.client.utils.URIBuilder
 import java.io.IOException
+import java.net.HttpURLConnection
 import java.net.URISyntaxException
+import java.net.URLConnection
 import java.time.Duration
+import java.time.ZonedDateTime
 import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
 import java.util.regex.Pattern
 import java.util.stream.Collectors
 
 @Service(Service.Level.PROJECT)
 class GitlabService(private val project: Project) : Disposable {
     private val config: ConfigProvider = ConfigProvider.instance
-    private val pipelineInfos: MutableMap<Mapping, List<PipelineJobStatus>> = HashMap()
-    private val openTokenDialogsByMapping: MutableSet<Mapping> = HashSet()
-    private val mergeRequests: MutableList<MergeRequest> = ArrayList()
+    private val snapshot: AtomicReference<PipelineSnapshot> = AtomicReference(PipelineSnapshot.EMPTY)
+    private val openTokenDialogsByMapping: MutableSet<Mapping> = ConcurrentHashMap.newKeySet()
+    private val interners: MutableMap<Mapping, Interner<String>> = ConcurrentHashMap()
     private val gitService: GitService = project.getService(GitService::class.java)
-    private var isCheckingForUnmappedRemotes = false
+    //A refresh of the user and a scheduled one may run at the same time
+    private val isCheckingForUnmappedRemotes = AtomicBoolean()
+    //Refreshes mostly wait for gitlab, so they run on virtual threads instead of blocking threads of the shared pool
+    private val loadExecutor: ExecutorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("GitLab refresh ", 0).factory())
+    private val hostPermits: MutableMap<String, Semaphore> = ConcurrentHashMap()
+    private val hostRotations: MutableMap<String, Int> = ConcurrentHashMap()
+    //Released when the project is closed so that another IDE process takes over
+    private val sharedCacheKeys: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    /**
+     * Loads the pipelines and merge requests and publishes them as new snapshots. Readers keep seeing the previous snapshot until then.
+     *
+     * At most [MAX_CONCURRENT_PROJECTS_PER_HOST] projects of each host are loaded at once, so a slow host doesn't delay the projects of
+     * other hosts. The results of every project are merged into the snapshot as soon as they're loaded.
+     *
+     * @param monitoredMappings the pipelines of all other mappings are removed from the snapshot
+     * @param onlyMappings      if not null only the pipelines and merge requests of these mappings (and other mappings of the same gitlab
+     * projects) are loaded, those of the other mappings are kept from the current snapshot
+     * @param onProjectLoaded   called with the new snapshot after the pipelines of a project were merged into it. Calls are not concurrent
+     * @return completed with the mappings for which pipelines were loaded when all projects are loaded, or with the first error
+     */
+    fun updatePipelineInfos(
+        monitoredMappings: Set<Mapping>,
+        triggeredByUser: Boolean,
+        onlyMappings: Set<Mapping>?,
+        onProjectLoaded: (PipelineSnapshot) -> Unit
+    ): CompletableFuture<Set<Mapping>> {
+        val mappingsToLoad = if (onlyMappings == null) {
+            monitoredMappings.toList()
+        } else {
+            //The pipelines are loaded only once per gitlab project anyway
+            val projectsToLoad = onlyMappings.map { GitlabProject.of(it) }.toSet()
+            monitoredMappings.filter { projectsToLoad.contains(GitlabProject.of(it)) }
+        }
+        if (mappingsToLoad.isEmpty()) {
+            //Otherwise mappings which aren't monitored anymore are removed when the first project is merged
+            mergeIntoSnapshot(monitoredMappings, emptyMap(), emptyList(), onProjectLoaded)
+        }
 
-    @Throws(IOException::class)
-    fun updatePipelineInfos(triggeredByUser: Boolean) {
+        val futures: MutableList<CompletableFuture<List<Mapping>>> = ArrayList()
+        for ((host, mappingsOfHost) in mappingsToLoad.groupBy { it.host }) {
+            //Fair, so the projects get their turn in the order they were submitted
+            val permits = hostPermits.computeIfAbsent(host) { Semaphore(MAX_CONCURRENT_PROJECTS_PER_HOST, true) }
+            //A new first project every time so that no project of a busy host always waits for the others
+            val projects = mappingsOfHost.groupBy { GitlabProject.of(it) }.values.sortedBy { it[0].gitlabProjectId }
+            val offset = Math.floorMod(hostRotations.merge(host, 1, Int::plus)!!, projects.size)
+            for ((index, mappingsOfProject) in (projects.drop(offset) + projects.take(offset)).withIndex()) {
+                futures.add(CompletableFuture.supplyAsync({
+                    if (!triggeredByUser && index >= MAX_CONCURRENT_PROJECTS_PER_HOST) {
+                        //Don't hit gitlab with the requests for all mappings at once. Waits without a permit so the others can load meanwhile
+                        Thread.sleep(ThreadLocalRandom.current().nextLong(MAX_MAPPING_STAGGER_MILLIS))
+                    }
+                    permits.acquire()
+                    try {
+                        updateProject(monitoredMappings, mappingsOfProject, triggeredByUser, onProjectLoaded)
+                    } finally {
+                        permits.release()
+                    }
+                    mappingsOfProject
+                }, loadExecutor))
+            }
+        }
+
+        //Completed when all projects are loaded, so an error is only reported after the other hosts are done
+        return CompletableFuture.allOf(*futures.toTypedArray()).handle { _, _ ->
+            interners.keys.retainAll(monitoredMappings)
+            val failure = futures.firstOrNull { it.isCompletedExceptionally }
+            //Rethrows the error of the failed project
+            failure?.join()
+            futures.flatMapTo(HashSet()) { it.join() }
+        }
+    }
+
+    private fun updateProject(monitoredMappings: Set<Mapping>, mappingsOfProject: List<Mapping>, triggeredByUser: Boolean, onProjectLoaded: (PipelineSnapshot) -> Unit) {
         val newMappingToPipelines: MutableMap<Mapping, List<PipelineJobStatus>> = HashMap()
-        for ((key, value) in loadPipelines(triggeredByUser)) {
-            val jobStatuses = value.stream()
-                .map { pipeline: PipelineTo ->
-                    PipelineJobStatus(
-                        pipeline.id,
-                        pipeline.ref,
-                        key.gitlabProjectId,
-                        pipeline.createdAt,
-                        pipeline.updatedAt,
-                        pipeline.status,
-                        pipeline.webUrl,
-                        pipeline.source
-                    )
-                }
-                .sorted(Comparator.comparing({ obj: PipelineJobStatus -> obj.getUpdateTime() }, Comparator.nullsFirst(Comparator.naturalOrder())).reversed())
-                .collect(Collectors.toList())
+        for ((key, value) in loadPipelines(mappingsOfProject, triggeredByUser)) {
+            newMappingToPipelines[key] = toJobStatuses(key, value)
+        }
+        val newMergeRequests = updateFromGraphQl(newMappingToPipelines, triggeredByUser)
+        mergeIntoSnapshot(monitoredMappings, newMappingToPipelines, newMergeRequests, onProjectLoaded)
+    }
+
+    /**
+     * Publishes a new snapshot with the given pipelines and merge requests. Pipelines and merge requests of other mappings are kept if they're
+     * still monitored.
+     *
+     * @param isReplaced whether a merge request of the current snapshot is replaced by the new ones. By default all merge requests of the
+     * mappings with new pipelines are
+     */
+    private fun mergeIntoSnapshot(
+        monitoredMappings: Set<Mapping>,
+        newMappingToPipelines: Map<Mapping, List<PipelineJobStatus>>,
+        newMergeRequests: List<MergeRequest>,
+        onSnapshotPublished: (PipelineSnapshot) -> Unit,
+        isReplaced: (MergeRequest) -> Boolean = { mergeRequest -> newMappingToPipelines.keys.any { belongsTo(mergeRequest, it) } }
+    ) {
+        //Every snapshot must be published before the next one is created, otherwise its delta would be lost
+        synchronized(snapshot) {
+            val newSnapshot = snapshot.updateAndGet { current ->
+                val mappingToPipelines: MutableMap<Mapping, List<PipelineJobStatus>> = HashMap()
+                current.pipelineInfos.filterKeysTo(mappingToPipelines) { monitoredMappings.contains(it) }
+                mappingToPipelines.putAll(newMappingToPipelines)
+                val mergeRequests = current.mergeRequests.filter { mergeRequest ->
+                    mappingToPipelines.keys.any { belongsTo(mergeRequest, it) } && !isReplaced(mergeRequest)
+                } + newMergeRequests
+                current.next(mappingToPipelines, mergeRequests)
+            }
+            logger.debug("Published ", newSnapshot)
+            onSnapshotPublished(newSnapshot)
+        }
+    }
+
+    private fun belongsTo(mergeRequest: MergeRequest, mapping: Mapping): Boolean {
+        return mergeRequest.webUrl != null && mergeRequest.webUrl.startsWith(mapping.host + "/" + mapping.projectPath + "/-/")
+    }
 
-            newMappingToPipelines[key] = jobStatuses
+    /**
+     * Loads only the pipelines and merge request of the given ref and merges them into the current snapshot, e.g. after the ref was
+     * checked out. Much cheaper than [updatePipelineInfos].
+     *
+     * @param onSnapshotPublished called with the new snapshot
+     * @return the loaded pipelines as returned by gitlab
+     */
+    @Throws(IOException::class, LoginException::class)
+    fun updatePipelinesForRef(mapping: Mapping, ref: String, onSnapshotPublished: (PipelineSnapshot) -> Unit): List<PipelineTo> {
+        if (openTokenDialogsByMapping.contains(mapping)) {
+            logger.debug("Not loading pipelines for ref. Token dialog open for ", mapping)
+            return emptyList()
+        }
+        val loadedPipelines = makePipelinesUrlCall(mapping, mapOf("ref" to ref, "per_page" to "20"))
+        var pipelinesOfRef = toJobStatuses(mapping, loadedPipelines)
+        val mergeRequestData = try {
+            loadMergeRequests(mapping, listOf(ref))
+        } catch (e: Exception) {
+            logger.info("Unable to load merge requests for ref $ref", e)
+            null
         }
-        synchronized(pipelineInfos) {
-            pipelineInfos.clear()
-            pipelineInfos.putAll(newMappingToPipelines)
+        if (mergeRequestData != null) {
+            pipelinesOfRef = pipelinesOfRef.map { mergeRequestData.apply(it) }
         }
+        val mergeRequestsOfRef = mergeRequestData?.mergeRequests ?: emptyList()
+        logger.debug("Loaded ", pipelinesOfRef.size, " pipelines and ", mergeRequestsOfRef.size, " merge requests for ref ", ref)
+
+        val newIds = pipelinesOfRef.map { it.id }.toSet()
+        //Held until the snapshot is published, so no other refresh can change the pipelines of the mapping in between
+        synchronized(snapshot) {
+            val current = snapshot.get()
+            val pipelines: MutableList<PipelineJobStatus> = ArrayList(pipelinesOfRef)
+            current.pipelineInfos[mapping]?.filterTo(pipelines) { !newIds.contains(it.id) }
+            pipelines.sortWith(Comparator.comparingLong<PipelineJobStatus> { it.updateTime }.reversed())
+            mergeIntoSnapshot(current.pipelineInfos.keys + mapping, mapOf(mapping to pipelines), mergeRequestsOfRef, onSnapshotPublished) {
+                it.sourceBranch == ref && belongsTo(it, mapping)
+            }
+        }
+        return loadedPipelines
+    }
+
+    private fun toJobStatuses(mapping: Mapping, pipelines: List<PipelineTo>): List<PipelineJobStatus> {
+        //Refs and sources are the same for hundreds of pipelines, so make sure each string is only kept once per mapping
+        return toJobStatuses(mapping, pipelines, interners.computeIfAbsent(mapping) { Interners.newWeakInterner() })
     }
 
-    fun updateFromGraphQl() {
-        val localPipelineInfos: Map<Mapping, List<PipelineJobStatus>> = HashMap(pipelineInfos)
-        mergeRequests.clear()
+    /**
+     * Loads the merge requests and replaces the given (not yet published) pipelines with copies containing the MR information.
+     */
+    private fun updateFromGraphQl(mappingToPipelines: MutableMap<Mapping, List<PipelineJobStatus>>, triggeredByUser: Boolean): List<MergeRequest> {
+        val mergeRequests: MutableList<MergeRequest> = ArrayList()
         try {
-            for (mapping in localPipelineInfos.keys) {
+            for (mappings in mappingToPipelines.keys.groupBy { GitlabProject.of(it) }.values) {
+                //Load the merge requests once per gitlab project and set them on the pipelines of all its mappings
+                val mapping = mappings[0]
                 logger.debug("Loading merge requests for remote ", mapping.remote)
-                val sourceBranches: List<String> = ArrayList(gitService.getTrackedBranches(mapping))
-                val data = GraphQl.makeCall(mapping.host, ConfigProvider.getToken(mapping), mapping.projectPath, sourceBranches, true)
-                if (data.isPresent) {
-                    val newMergeRequests = data.get().project.mergeRequests.edges.stream().map { obj: Edge -> obj.mergeRequest }
-                        .toList()
-                    mergeRequests.addAll(newMergeRequests)
-                    logger.debug("Loaded ", mergeRequests.size, " pipelines for remote ", mapping.remote)
-
-                    val mergeRequestsBySourceBranch = mergeRequests.stream().collect(
-                        Collectors.groupingBy { obj: MergeRequest -> obj.sourceBranch }
-                    )
-                    val pipelinesByIid = data.get().project.pipelines.nodes.stream()
-                        .collect(
-                            Collectors.groupingBy { x: PipelineNode ->
-                                x.id.substring(x.id.lastIndexOf("/") + 1).toLong()
-                            }
-                        )
-                    for (pipelineJobStatus in localPipelineInfos[mapping]!!) {
-                        val mergeRequestsForPipeline = mergeRequestsBySourceBranch[pipelineJobStatus.branchName]
-                        if (!mergeRequestsForPipeline.isNullOrEmpty()) {
-                            pipelineJobStatus.mergeRequestLink = mergeRequestsForPipeline[0].webUrl
-                        }
-                        val pipelineNodesForPipeline = pipelinesByIid[pipelineJobStatus.id]
-                        if (!pipelineNodesForPipeline.isNullOrEmpty()) {
-                            val detailedStatus = pipelineNodesForPipeline[0].detailedStatus
-                            if (detailedStatus != null) {
-                                pipelineJobStatus.statusGroup = detailedStatus.group
-                            }
-                        }
+                val sourceBranches: List<String> = mappings.flatMapTo(LinkedHashSet()) { gitService.getTrackedBranches(it) }.toList()
+                val mergeRequestData = loadMergeRequests(mapping, sourceBranches, !triggeredByUser)
+                if (mergeRequestData != null) {
+                    mergeRequests.addAll(mergeRequestData.mergeRequests)
+                    for (mappingOfProject in mappings) {
+                        mappingToPipelines[mappingOfProject] = mappingToPipelines[mappingOfProject]!!.map { mergeRequestData.apply(it) }
                     }
                 } else {
                     logger.debug("Unable to load merge requests for remote ", mapping.remote)
@@ -116,26 +243,84 @@ class GitlabService(private val project: Project) : Disposable {
         } catch (e: Exception) {
             logger.info("Unable to load merge requests", e)
         }
+        return mergeRequests
     }
 
-    fun getPipelineInfos(): Map<Mapping, List<PipelineJobStatus>> {
-        synchronized(pipelineInfos) {
-            return pipelineInfos
+    /**
+     * Loads the merge requests for the source branches.
+     *
+     * @param useShared true to use the merge requests loaded by another IDE process with the same branches
+     * @return null if the merge requests couldn't be loaded
+     */
+    private fun loadMergeRequests(mapping: Mapping, sourceBranches: List<String>, useShared: Boolean = false): MergeRequestData? {
+        val sharedCacheKey = mapping.host + "|" + mapping.gitlabProjectId + "|mergeRequests|" + sourceBranches.sorted().joinToString(",")
+        sharedCacheKeys.add(sharedCacheKey)
+        val sharedData = if (useShared) SharedPipelineCache.getInstance().readIfFollower(sharedCacheKey, getSharedCacheMaxAgeMillis(mapping), SHARED_DATA) else null
+        if (sharedData != null) {
+            logger.debug("Using merge requests loaded by another IDE process for ", mapping.remote)
         }
+        val data = sharedData ?: GraphQl.makeCall(mapping.host, ConfigProvider.getToken(mapping), mapping.projectPath, sourceBranches, true).orElse(null)
+            ?.also { SharedPipelineCache.getInstance().writeIfLeader(sharedCacheKey, it) }
+            ?: return null
+        val newMergeRequests = data.project.mergeRequests.edges.stream().map { obj: Edge -> obj.mergeRequest }
+            .toList()
+        logger.debug("Loaded ", newMergeRequests.size, " merge requests for remote ", mapping.remote)
+
+        val pipelinesByIid = data.project.pipelines.nodes.stream()
+            .collect(
+                Collectors.groupingBy { x: PipelineNode ->
+                    x.id.substring(x.id.lastIndexOf("/") + 1).toLong()
+                }
+            )
+        return MergeRequestData(newMergeRequests, pipelinesByIid)
     }
 
-    fun getMergeRequests(): List<MergeRequest> {
-        synchronized(pipelineInfos) {
-            return mergeRequests
+    /**
+     * The merge requests of a gitlab project and the details of its pipelines loaded with them.
+     */
+    private class MergeRequestData(val mergeRequests: List<MergeRequest>, private val pipelinesByIid: Map<Long, List<PipelineNode>>) {
+        private val mergeRequestsBySourceBranch: Map<String, List<MergeRequest>> = mergeRequests.groupBy { it.sourceBranch }
+
+        /**
+         * @return a copy of the pipeline with the information of its merge request and detailed status
+         */
+        fun apply(pipelineJobStatus: PipelineJobStatus): PipelineJobStatus {
+            var mergeRequestLink = mergeRequestsBySourceBranch[pipelineJobStatus.branchName]?.firstOrNull()?.webUrl
+            val statusGroup = pipelinesByIid[pipelineJobStatus.id]?.firstOrNull()?.detailedStatus?.group
+            var branchNameDisplay: String? = null
+            val matchingMergeRequest = mergeRequests.firstOrNull { it.headPipeline != null && it.headPipeline.ref == pipelineJobStatus.branchName }
+            if (matchingMergeRequest != null) {
+                logger.debug("Branch with ref ", pipelineJobStatus.branchName, " matches MR ", matchingMergeRequest)
+                val appConfig = PipelineViewerConfigApp.instance
+                val prefix = Strings.nullToEmpty(appConfig.mrPipelinePrefix)
+                branchNameDisplay = if (appConfig.mrPipelineDisplayType == PipelineViewerConfigApp.MrPipelineDisplayType.SOURCE_BRANCH) {
+                    prefix + matchingMergeRequest.sourceBranch
+                } else {
+                    prefix + matchingMergeRequest.title
+                }
+                mergeRequestLink = matchingMergeRequest.webUrl
+            }
+            return pipelineJobStatus.withMergeRequestInfo(mergeRequestLink, branchNameDisplay, statusGroup)
         }
     }
 
+    fun getSnapshot(): PipelineSnapshot {
+        return snapshot.get()
+    }
+
+    fun getPipelineInfos(): Map<Mapping, List<PipelineJobStatus>> {
+        return snapshot.get().pipelineInfos
+    }
+
+    fun getMergeRequests(): List<MergeRequest> {
+        return snapshot.get().mergeRequests
+    }
+
     fun checkForUnmappedRemotes(triggeredByUser: Boolean) {
         //Locks don't work here for some reason
-        if (isCheckingForUnmappedRemotes) {
+        if (!isCheckingForUnmappedRemotes.compareAndSet(false, true)) {
             return
         }
-        isCheckingForUnmappedRemotes = true
         try {
             ConfigProvider.instance.aquireLock()
             val gitRepositories = gitService.allGitRepositories
@@ -212,7 +397,7 @@ class GitlabService(private val project: Project) : Disposable {
                 }
             }
         } finally {
-            isCheckingForUnmappedRemotes = false
+            isCheckingForUnmappedRemotes.set(false)
         }
     }
 
@@ -247,13 +432,15 @@ class GitlabService(private val project: Project) : Disposable {
         return true
     }
 
-    @Throws(IOException::class)
-    private fun loadPipelines(triggeredByUser: Boolean): Map<Mapping, List<PipelineTo>> {
-        val projectToPipelines: MutableMap<Mapping, List<PipelineTo>> = HashMap()
+    /**
+     * @return the mappings of the non-ignored repositories for which pipelines are loaded
+     */
+    fun getMonitoredMappings(triggeredByUser: Boolean): List<Mapping> {
+        val mappings: MutableList<Mapping> = ArrayList()
         val nonIgnoredRepositories = gitService.nonIgnoredRepositories
         if (nonIgnoredRepositories.isEmpty()) {
             logger.debug("No non-ignored git repositories")
-            return emptyMap()
+            return emptyList()
         }
         for (nonIgnoredRepository in nonIgnoredRepositories) {
             for (remote in nonIgnoredRepository.remotes) {
@@ -267,20 +454,33 @@ class GitlabService(private val project: Project) : Disposable {
                         logger.debug("Remote ", url, " is ignored until next plugin load and reload was not triggered by user. Not loading pipelines.")
                         continue
                     }
-                    logger.debug("Loading pipelines for remote ", mapping.remote)
-                    val pipelines = loadPipelines(mapping)
-                    logger.debug("Loaded ", pipelines.size, " pipelines for remote ", mapping.remote)
-
-                    projectToPipelines[mapping] = pipelines
+                    if (!mappings.contains(mapping)) {
+                        mappings.add(mapping)
+                    }
                 }
             }
         }
+        return mappings
+    }
 
-        return projectToPipelines
+    /**
+     * Loads the pipelines of the mappings of one gitlab project. A repository may have several remotes or URLs for the same gitlab project
+     * (e.g. fetch and push URL), the pipelines are loaded only once for them.
+     */
+    @Throws(IOException::class)
+    private fun loadPipelines(mappingsOfProject: List<Mapping>, triggeredByUser: Boolean): Map<Mapping, List<PipelineTo>> {
+        val mapping = mappingsOfProject[0]
+        logger.debug("Loading pipelines for remote ", mapping.remote)
+        val pipelines = loadPipelines(mapping, triggeredByUser)
+        logger.debug("Loaded ", pipelines.size, " pipelines for remote ", mapping.remote)
+        if (mappingsOfProject.size > 1) {
+            logger.debug("Using pipelines of ", GitlabProject.of(mapping), " for ", mappingsOfProject.size, " mappings")
+        }
+        return mappingsOfProject.associateWith { pipelines }
     }
 
     @Throws(IOException::class)
-    private fun loadPipelines(mapping: Mapping): List<PipelineTo> {
+    private fun loadPipelines(mapping: Mapping, triggeredByUser: Boolean): List<PipelineTo> {
         val pipelines: MutableList<PipelineTo> = ArrayList()
         try {
             if (openTokenDialogsByMapping.contains(mapping)) {
@@ -288,9 +488,24 @@ class GitlabService(private val project: Project) : Disposable {
                 logger.debug("Not loading pipelines. Token dialog open for ", mapping)
                 return emptyList()
             }
+            //Other IDE processes on this machine may already have loaded the pipelines
+            val sharedCacheKey = mapping.host + "|" + mapping.gitlabProjectId + "|" + PipelineViewerConfigApp.instance.isLoadLatestPipelinePerRef
+            sharedCacheKeys.add(sharedCacheKey)
+            if (!triggeredByUser) {
+                val sharedPipelines = SharedPipelineCache.getInstance().readIfFollower(sharedCacheKey, getSharedCacheMaxAgeMillis(mapping))
+                if (sharedPipelines != null) {
+                    logger.debug("Using ", sharedPipelines.size, " pipelines loaded by another IDE process for ", mapping.remote)
+                    return sharedPipelines
+                }
+            }
             //Note: Gitlab GraphQL does not return the ref (branch name): https://gitlab.com/gitlab-org/gitlab/-/issues/230405
-            pipelines.addAll(makePipelinesUrlCall(1, mapping))
-            pipelines.addAll(makePipelinesUrlCall(2, mapping))
+            if (PipelineViewerConfigApp.instance.isLoadLatestPipelinePerRef) {
+                pipelines.addAll(loadLatestPipelinesPerRef(mapping))
+            } else {
+                pipelines.addAll(makePipelinesUrlCall(mapping, mapOf("page" to "1", "per_page" to "100")))
+                pipelines.addAll(makePipelinesUrlCall(mapping, mapOf("page" to "2", "per_page" to "100")))
+            }
+            SharedPipelineCache.getInstance().writeIfLeader(sharedCacheKey, pipelines)
         } catch (e: Exception) {
             if (e is FailsafeException && e.cause is IOException) {
                 throw (e.cause as IOException?)!!
@@ -304,68 +519,101 @@ class GitlabService(private val project: Project) : Disposable {
             }
             if (handle) {
                 logger.debug("Login exception while loading pipelines", e)
-                ApplicationManager.getApplication().invokeLater {
-                    if (openTokenDialogsByMapping.contains(mapping)) {
-                        logger.debug("Not showing another token dialog for ", mapping)
-                        //Just to make sure
-                        return@invokeLater
-                    }
-                    val tokenAndType = ActionUtil.underModalProgress(
-                        project, "Reading token"
-                    ) { ConfigProvider.getTokenAndType(mapping.remote, mapping.host) }
-                    val oldToken = if (Strings.isNullOrEmpty(tokenAndType.left)) "<empty>" else tokenAndType.left!!
-                    val oldTokenForLog = if (Strings.isNullOrEmpty(tokenAndType.left)) "<empty>" else "with length " + tokenAndType.left!!.length
-                    val tokenType = tokenAndType.right
-                    logger.info("Showing input dialog for token for remote " + mapping.remote + " with old token " + oldTokenForLog)
-                    val preselectedTokenType = if (tokenAndType.left == null) TokenType.PERSONAL else tokenType
-                    openTokenDialogsByMapping.add(mapping)
-
-                    val clickedOk = TokenDialog.Wrapper(
-                        project,
-                        "Unable to log in to gitlab. Please enter the access token for access to " + mapping.remote + ". Enter nothing to delete it.",
-                        oldToken,
-                        preselectedTokenType
-                    ) { response: Pair<String?, TokenType?> ->
-                        if (Strings.isNullOrEmpty(response.left)) {
-                            logger.info("No token entered, setting token to null for remote " + mapping.remote)
-                            response.right?.let { ConfigProvider.saveToken(mapping, null, it, project) }
-                        } else {
-                            logger.info("New token entered for remote " + mapping.remote)
-                            response.right?.let { ConfigProvider.saveToken(mapping, response.left, it, project) }
-                        }
-                    }
-                        .showAndGet()
+                handleLoginError(mapping)
+                return emptyList()
+            }
+            throw e
+        }
+        return pipelines
+    }
 
-                    openTokenDialogsByMapping.remove(mapping)
+    /**
+     * Asks the user for a new access token after gitlab refused the current one. Not asked again while a dialog for the mapping is open.
+     */
+    fun handleLoginError(mapping: Mapping) {
+        ApplicationManager.getApplication().invokeLater {
+            if (openTokenDialogsByMapping.contains(mapping)) {
+                logger.debug("Not showing another token dialog for ", mapping)
+                //Just to make sure
+                return@invokeLater
+            }
+            val tokenAndType = ActionUtil.underModalProgress(
+                project, "Reading token"
+            ) { ConfigProvider.getTokenAndType(mapping.remote, mapping.host) }
+            val oldToken = if (Strings.isNullOrEmpty(tokenAndType.left)) "<empty>" else tokenAndType.left!!
+            val oldTokenForLog = if (Strings.isNullOrEmpty(tokenAndType.left)) "<empty>" else "with length " + tokenAndType.left!!.length
+            val tokenType = tokenAndType.right
+            logger.info("Showing input dialog for token for remote " + mapping.remote + " with old token " + oldTokenForLog)
+            val preselectedTokenType = if (tokenAndType.left == null) TokenType.PERSONAL else tokenType
+            openTokenDialogsByMapping.add(mapping)
+
+            val clickedOk = TokenDialog.Wrapper(
+                project,
+                "Unable to log in to gitlab. Please enter the access token for access to " + mapping.remote + ". Enter nothing to delete it.",
+                oldToken,
+                preselectedTokenType
+            ) { response: Pair<String?, TokenType?> ->
+                if (Strings.isNullOrEmpty(response.left)) {
+                    logger.info("No token entered, setting token to null for remote " + mapping.remote)
+                    response.right?.let { ConfigProvider.saveToken(mapping, null, it, project) }
+                } else {
+                    logger.info("New token entered for remote " + mapping.remote)
+                    response.right?.let { ConfigProvider.saveToken(mapping, response.left, it, project) }
+                }
+            }
+                .showAndGet()
 
-                    if (!clickedOk) {
-                        logger.info("Token dialog cancelled, not changing anything. Will not load pipelines until next plugin load or triggered manually")
-                        PipelineViewerConfigApp.instance.remotesAskAgainNextTime.add(mapping.remote)
-                        return@invokeLater
-                    }
+            openTokenDialogsByMapping.remove(mapping)
 
-                    PipelineViewerConfigApp.instance.remotesAskAgainNextTime.remove(mapping.remote)
-                    if (project.isDisposed) {
-                        return@invokeLater
-                    }
-                    project.getService(BackgroundUpdateService::class.java).update(project, false)
+            if (!clickedOk) {
+                logger.info("Token dialog cancelled, not changing anything. Will not load pipelines until next plugin load or triggered manually")
+                PipelineViewerConfigApp.instance.remotesAskAgainNextTime.add(mapping.remote)
+                return@invokeLater
+            }
+
+            PipelineViewerConfigApp.instance.remotesAskAgainNextTime.remove(mapping.remote)
+            if (project.isDisposed) {
+                return@invokeLater
+            }
+            project.getService(BackgroundUpdateService::class.java).update(project, false)
+        }
+    }
+
+    /**
+     * Loads only the latest pipeline of every branch and tag. For refs where that pipeline hasn't finished yet the recent pipelines are loaded
+     * as well so that the last finished one is still known.
+     */
+    @Throws(IOException::class, LoginException::class)
+    private fun loadLatestPipelinesPerRef(mapping: Mapping): List<PipelineTo> {
+        val scopes = if (PipelineViewerConfigApp.instance.isShowForTags) listOf("branches", "tags") else listOf("branches")
+        val latestPipelines: MutableList<PipelineTo> = ArrayList()
+        for (scope in scopes) {
+            for (page in 1..MAX_LATEST_PER_REF_PAGES) {
+                val pipelinesOfPage = makePipelinesUrlCall(mapping, mapOf("scope" to scope, "page" to page.toString(), "per_page" to "100"))
+                latestPipelines.addAll(pipelinesOfPage)
+                if (pipelinesOfPage.size < 100) {
+                    break
                 }
-                return emptyList()
             }
-            throw e
+        }
+        val pipelines: MutableList<PipelineTo> = ArrayList(latestPipelines)
+        val loadedIds = latestPipelines.map { it.id }.toMutableSet()
+        val unfinished = latestPipelines.filter { !PipelineStatus.fromValue(it.status).isFinal }
+        logger.debug("Loaded latest pipelines of ", latestPipelines.size, " refs, loading history for ", unfinished.size, " of them for ", mapping.remote)
+        for (latestPipeline in unfinished) {
+            makePipelinesUrlCall(mapping, mapOf("ref" to latestPipeline.ref, "per_page" to "20"))
+                .filter { loadedIds.add(it.id) }
+                .forEach { pipelines.add(it) }
         }
         return pipelines
     }
 
     @Throws(IOException::class, LoginException::class)
-    private fun makePipelinesUrlCall(page: Int, mapping: Mapping): List<PipelineTo> {
+    private fun makePipelinesUrlCall(mapping: Mapping, parameters: Map<String, String>): List<PipelineTo> {
         val url: String
         try {
             val uriBuilder = URIBuilder(mapping.host + "/api/v4/projects/" + mapping.gitlabProjectId + "/pipelines")
-
-            uriBuilder.addParameter("page", page.toString())
-                .addParameter("per_page", "100")
-
+            parameters.forEach { (name, value) -> uriBuilder.addParameter(name, value) }
 
             url = uriBuilder.build().toString()
         } catch (e: URISyntaxException) {
@@ -383,10 +631,34 @@ class GitlabService(private val project: Project) : Disposable {
         return mapping?.host + "/" + mapping?.projectPath
     }
 
+    private fun getSharedCacheMaxAgeMillis(mapping: Mapping): Long {
+        return project.getService(RefreshSchedule::class.java).getRefreshDelaySeconds(mapping) * SHARED_CACHE_MAX_AGE_FACTOR * 1000L
+    }
+
     override fun dispose() {
+        loadExecutor.shutdownNow()
+        ApplicationManager.getApplication().getServiceIfCreated(SharedPipelineCache::class.java)?.release(sharedCacheKeys)
+    }
+
+    /**
+     * @param statusCode 401 or 404, gitlab also returns 404 for projects which can't be accessed
+     */
+    class LoginException(message: String?, val statusCode: Int = HttpURLConnection.HTTP_UNAUTHORIZED) : Exception(message)
+
+    /**
+     * Identifies a gitlab project. Several mappings may point to the same one.
+     */
+    private data class GitlabProject(val host: String, val projectId: String) {
+        companion object {
+            fun of(mapping: Mapping): GitlabProject = GitlabProject(mapping.host, mapping.gitlabProjectId)
+        }
     }
 
-    class LoginException(message: String?) : Exception(message)
+    /**
+     * @param pipeline    null if not modified
+     * @param notModified true if the pipeline didn't change since the ETag used for the request was returned
+     */
+    class LatestPipeline(@JvmField val pipeline: PipelineTo?, @JvmField val etag: String?, @JvmField val notModified: Boolean)
 
 
     companion object {
@@ -399,6 +671,17 @@ class GitlabService(private val project: Project) : Disposable {
         private val REMOTE_GIT_SSH_PATTERN: Pattern = Pattern.compile("git@(?<host>.*):(?<projectPath>.*)(\\.git)?")
         private val REMOTE_GIT_HTTP_PATTERN: Pattern = Pattern.compile("(?<scheme>https?://)(?<url>.*)(\\.git)?")
         private val REMOTE_BEST_GUESS_PATTERN: Pattern = Pattern.compile("(?<host>https?://[^/]*)/(?<projectPath>.*)")
+        //Limits the number of refs for which the latest pipeline is loaded to 1000 per scope
+        private const val MAX_LATEST_PER_REF_PAGES = 10
+        private const val MAX_MAPPING_STAGGER_MILLIS = 1000L
+
+        //Projects of the same host loaded at the same time during a refresh
+        private const val MAX_CONCURRENT_PROJECTS_PER_HOST = 2
+
+        //Pipelines shared by another IDE process are used if they were loaded within this many refresh delays
+        private const val SHARED_CACHE_MAX_AGE_FACTOR = 2
+        //The whole graphql response so that the pipeline details loaded with the merge requests are shared as well
+        private val SHARED_DATA = object : TypeReference<Data>() {}
         private val INCOMPATIBLE_REMOTES: List<String> = mutableListOf("github.com", "bitbucket.com")
         private val RETRY_POLICY: RetryPolicy<String> = RetryPolicy.builder<String>()
             .handle(IOException::class.java, LoginException::class.java)
@@ -406,6 +689,32 @@ class GitlabService(private val project: Project) : Disposable {
             .withMaxRetries(5)
             .build()
 
+        /**
+         * @param interner keeps each ref and source only once, shared by all refreshes of the mapping
+         */
+        internal fun toJobStatuses(mapping: Mapping, pipelines: List<PipelineTo>, interner: Interner<String>): List<PipelineJobStatus> {
+            val pipelineLinkBase = interner.intern(mapping.host + "/" + mapping.projectPath + "/-/pipelines/")
+            return pipelines.stream()
+                .map { pipeline: PipelineTo ->
+                    PipelineJobStatus(
+                        pipeline.id,
+                        interner.intern(pipeline.ref),
+                        mapping.gitlabProjectId,
+                        toEpochMillis(pipeline.createdAt),
+                        toEpochMillis(pipeline.updatedAt),
+                        PipelineStatus.fromValue(pipeline.status),
+                        pipelineLinkBase,
+                        if (pipeline.source == null) null else interner.intern(pipeline.source)
+                    )
+                }
+                .sorted(Comparator.comparingLong<PipelineJobStatus> { it.updateTime }.reversed())
+                .collect(Collectors.toList())
+        }
+
+        internal fun toEpochMillis(dateTime: ZonedDateTime?): Long {
+            return dateTime?.toInstant()?.toEpochMilli() ?: 0
+        }
+
         @JvmStatic
         fun createMappingWithProjectNameAndId(
             remoteUrl: String,
@@ -432,8 +741,40 @@ class GitlabService(private val project: Project) : Disposable {
             return Optional.of(mapping)
         }
 
+        /**
+         * Loads the latest pipeline of the ref. If the ETag of a previous response is given gitlab only answers with "not modified" as long
+         * as the pipeline doesn't change.
+         */
+        @JvmStatic
+        @Throws(IOException::class, LoginException::class)
+        fun loadLatestPipeline(mapping: Mapping, ref: String, etag: String?): LatestPipeline {
+            val url = URIBuilder(mapping.host + "/api/v4/projects/" + mapping.gitlabProjectId + "/pipelines/latest")
+                .addParameter("ref", ref)
+                .build().toString()
+            var responseCode = 0
+            var newEtag: String? = null
+            val requestHeaders = if (etag == null) emptyMap() else mapOf("If-None-Match" to etag)
+            val json = makeApiCall(url, ConfigProvider.getToken(mapping), { connection ->
+                responseCode = (connection as HttpURLConnection).responseCode
+                newEtag = connection.getHeaderField("ETag")
+            }, requestHeaders)
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return LatestPipeline(null, etag, true)
+            }
+            return LatestPipeline(Jackson.OBJECT_MAPPER.readValue(json, PipelineTo::class.java), newEtag, false)
+        }
+
         @Throws(IOException::class, LoginException::class)
-        fun makeApiCall(url: String, accessToken: String?): String {
+        /**
+         * @param responseConsumer called with the connection after the response was read, e.g. to read headers
+         * @param requestHeaders   added to the request, e.g. for conditional requests
+         */
+        fun makeApiCall(
+            url: String,
+            accessToken: String?,
+            responseConsumer: ((URLConnection) -> Unit)? = null,
+            requestHeaders: Map<String, String> = emptyMap()
+        ): String {
             var urlToUse = url
             try {
                 if (accessToken != null) {
@@ -455,13 +796,18 @@ class GitlabService(private val project: Project) : Disposable {
                 response = HttpRequests.request(urlToUse)
                     .connectTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
                     .readTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
-                    .readString()
+                    .tuner { connection -> requestHeaders.forEach { (name, value) -> connection.setRequestProperty(name, value) } }
+                    .connect { request ->
+                        val body = request.readString()
+                        responseConsumer?.invoke(request.connection)
+                        body
+                    }
             } catch (e: IOException) {
                 if (e is HttpRequests.HttpStatusException) {
                     //Unfortunately gitlab returns a 404 if the project was found but could not be accessed. We must interpret 404 like 401
                     if (e.statusCode == 401 || e.statusCode == 404) {
                         logger.info("Unable to load pipelines. Interpreting as login error. Status code " + e.statusCode + ". Message: " + e.message)
-                        throw LoginException("Unable to login to $cleanedUrl")
+                        throw LoginException("Unable to login to $cleanedUrl", e.statusCode)
                     } else {
                         throw IOException("Unable to access " + cleanedUrl + ". Status code: " + e.statusCode + ". Status message: " + e.message)
                     }
@@ -509,28 +855,19 @@ class GitlabService(private val project: Project) : Disposable {
                 for (part in fullUrl.split("/".toRegex()).dropLastWhile { it.isEmpty() }.toTypedArray()) {
                     testUrl.append(part).append("/")
 
-                    val response: String?
+                    //Always called in the background
+                    val response: String
                     try {
                         logger.debug("Trying URL ", testUrl)
-                        response = ApplicationManager.getApplication().executeOnPooledThread<String> {
-                            try {
-                                return@executeOnPooledThread HttpRequests
-                                    .request(testUrl.toString())
-                                    .connectTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
-                                    .readTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
-                                    .readString()
-                            } catch (e: Exception) {
-                                logger.info("Unable to retrieve host and project path from remote $remote", e)
-                                return@executeOnPooledThread null
-                            }
-                        }.get()
+                        response = HttpRequests
+                            .request(testUrl.toString())
+                            .connectTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
+                            .readTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
+                            .readString()
                     } catch (e: Exception) {
                         logger.info("Unable to retrieve host and project path from remote $remote", e)
                         return tryBestGuessForRemote(remote)
                     }
-                    if (response == null) {
-                        return tryBestGuessForRemote(remote)
-                    }
                     if (response.lowercase(Locale.getDefault()).contains("gitlab")) {
                         val hostAndProjectPath =
                             HostAndProjectPath(StringUtils.removeEndIgnoreCase(testUrl.toString(), "/"), getCleanProjectPath(remote.substring(testUrl.length)))
@@ -1,7 +1,7 @@
 // (C) 2021 PPI AG
 package de.sist.gitlab.pipelinemonitor.gitlab
 
-import com.intellij.openapi.application.ApplicationManager
+import com.fasterxml.jackson.databind.JsonNode
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.util.io.HttpRequests
 import de.sist.gitlab.pipelinemonitor.Jackson
@@ -10,10 +10,10 @@ import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp
 import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp.GitlabInfo
 import de.sist.gitlab.pipelinemonitor.gitlab.mapping.Data
 import de.sist.gitlab.pipelinemonitor.gitlab.mapping.DataWrapper
+import java.io.IOException
 import java.time.Instant
 import java.time.temporal.ChronoUnit
 import java.util.*
-import java.util.concurrent.ExecutionException
 import java.util.stream.Collectors
 
 /**
@@ -141,37 +141,70 @@ object GraphQl {
         }
     }
 
-    @Throws(InterruptedException::class, ExecutionException::class)
-    private fun call(accessToken: String?, graphQlUrl: String, graphQlQuery: String): String? {
-        val responseString = ApplicationManager.getApplication().executeOnPooledThread<String> {
-            if (GitlabAccessLogger.GITLAB_ACCESS_LOGGER.isDebugEnabled) {
-                val cleanedUrl = if (accessToken == null) graphQlUrl else graphQlUrl.replace(accessToken, "<accessToken>")
-                GitlabAccessLogger.GITLAB_ACCESS_LOGGER.debug("Calling ", cleanedUrl)
+    /**
+     * Loads the latest pipeline for each of the given refs with one query.
+     *
+     * @return the pipeline nodes by ref. Refs without pipeline are missing
+     */
+    fun makeLatestPipelinesCall(gitlabHost: String, accessToken: String?, projectPath: String, refs: List<String>): Map<String, JsonNode> {
+        if (refs.isEmpty()) {
+            return emptyMap()
+        }
+        val query = StringBuilder("{ project(fullPath: \"").append(escape(projectPath)).append("\") {")
+        for ((index, ref) in refs.withIndex()) {
+            //Aliases must be valid identifiers, so refs are referenced by their index
+            query.append(" r").append(index).append(": pipelines(ref: \"").append(escape(ref)).append("\", first: 1) { nodes { id status createdAt updatedAt } }")
+        }
+        query.append(" } }")
+        val graphQlUrl = "$gitlabHost/api/graphql"
+        val request = Jackson.OBJECT_MAPPER.writeValueAsString(mapOf("query" to query.toString()))
+        logger.debug("Loading latest pipelines for ", refs.size, " refs using URL ", graphQlUrl)
+        val responseString = call(accessToken, graphQlUrl, request) ?: return emptyMap()
+        val project = Jackson.OBJECT_MAPPER.readTree(responseString).path("data").path("project")
+        val result: MutableMap<String, JsonNode> = HashMap()
+        for ((index, ref) in refs.withIndex()) {
+            val node = project.path("r$index").path("nodes").path(0)
+            if (!node.isMissingNode) {
+                result[ref] = node
             }
-            HttpRequests.post(graphQlUrl, "application/json")
-                .readTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
-                .connectTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000) //Is handled in connection step
-                .throwStatusCodeException(false)
-                .connect { request: HttpRequests.Request ->
-                    val response: String
-                    try {
-                        if (accessToken != null) {
-                            request.connection.setRequestProperty("Authorization", "Bearer $accessToken")
-                            logger.debug("Using access token with length ", accessToken.length)
-                        } else {
-                            logger.debug("Not using access token as none is set")
-                        }
-                        request.write(graphQlQuery)
-                        response = request.readString()
-                    } catch (e: Exception) {
-                        logger.warn("Error connecting to gitlab", e)
-                        return@connect null
+        }
+        return result
+    }
+
+    private fun escape(value: String): String {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"")
+    }
+
+    /**
+     * Runs on the calling thread which must not be the EDT.
+     */
+    @Throws(IOException::class)
+    private fun call(accessToken: String?, graphQlUrl: String, graphQlQuery: String): String? {
+        if (GitlabAccessLogger.GITLAB_ACCESS_LOGGER.isDebugEnabled) {
+            val cleanedUrl = if (accessToken == null) graphQlUrl else graphQlUrl.replace(accessToken, "<accessToken>")
+            GitlabAccessLogger.GITLAB_ACCESS_LOGGER.debug("Calling ", cleanedUrl)
+        }
+        return HttpRequests.post(graphQlUrl, "application/json")
+            .readTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000)
+            .connectTimeout(ConfigProvider.instance.connectTimeoutSeconds * 1000) //Is handled in connection step
+            .throwStatusCodeException(false)
+            .connect { request: HttpRequests.Request ->
+                val response: String
+                try {
+                    if (accessToken != null) {
+                        request.connection.setRequestProperty("Authorization", "Bearer $accessToken")
+                        logger.debug("Using access token with length ", accessToken.length)
+                    } else {
+                        logger.debug("Not using access token as none is set")
                     }
-                    logger.debug("Got response from query\n:", response)
-                    response
+                    request.write(graphQlQuery)
+                    response = request.readString()
+                } catch (e: Exception) {
+                    logger.warn("Error connecting to gitlab", e)
+                    return@connect null
                 }
-        }
-            .get()
-        return responseString
+                logger.debug("Got response from query\n:", response)
+                response
+            }
     }
 }
@@ -3,31 +3,69 @@ package de.sist.gitlab.pipelinemonitor.lights;
 import com.google.common.base.Strings;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationActivationListener;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import de.sist.gitlab.pipelinemonitor.PipelineJobStatus;
-import de.sist.gitlab.pipelinemonitor.ReloadListener;
+import com.intellij.openapi.wm.IdeFrame;
+import com.intellij.util.messages.MessageBusConnection;
+import de.sist.gitlab.pipelinemonitor.BackgroundUpdateService;
+import de.sist.gitlab.pipelinemonitor.PipelineStatus;
+import de.sist.gitlab.pipelinemonitor.PollingBudget;
 import de.sist.gitlab.pipelinemonitor.config.ConfigProvider;
 import de.sist.gitlab.pipelinemonitor.config.Mapping;
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp;
+import de.sist.gitlab.pipelinemonitor.git.GitService;
+import de.sist.gitlab.pipelinemonitor.gitlab.GitlabService;
+import git4idea.repo.GitRemote;
+import git4idea.repo.GitRepository;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-public class LightsControl {
+public class LightsControl implements PollingBudget.Poller, Disposable {
 
     private static final Logger logger = Logger.getInstance(LightsControl.class);
+    private static final int POLL_INTERVAL_SECONDS = 5;
     private static LightsApi lightsApi;
+    //The poll waits for gitlab, a virtual thread doesn't block a thread of the scheduler meanwhile
+    private static final ExecutorService pollExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("GitLab lights ", 0).factory());
 
     private final Project project;
-    private final Set<PipelineJobStatus> handledRuns = new HashSet<>();
+    private long handledPipelineId = -1;
+    private PipelineStatus handledStatus;
+    private long lastPollMillis;
+    private boolean isPolling;
+    //ETag of the last response per host, gitlab project ID and branch
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
 
 
     public LightsControl(Project project) {
         this.project = project;
 
+        final MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(PowerSaveMode.TOPIC, (PowerSaveMode.Listener) () -> {
+            if (!PowerSaveMode.isEnabled()) {
+                PollingBudget.getInstance().reschedule();
+            }
+        });
+        //The polls are no longer slowed down
+        connection.subscribe(ApplicationActivationListener.TOPIC, new ApplicationActivationListener() {
+            @Override
+            public void applicationActivated(@NotNull IdeFrame ideFrame) {
+                PollingBudget.getInstance().reschedule();
+            }
+        });
         initialize(project);
     }
 
@@ -51,21 +89,74 @@ public class LightsControl {
             return;
         }
 
-        String lightsForBranch = ConfigProvider.getInstance().getShowLightsForBranch(project);
-        if (!Strings.isNullOrEmpty(lightsForBranch)) {
-            //Only subscribe if a branch should be watched
-            project.getMessageBus().connect().subscribe(ReloadListener.RELOAD, (ReloadListener) pipelineInfos -> ApplicationManager.getApplication().invokeLater(() -> showState(pipelineInfos)));
+        startWatcher();
+    }
+
+    /**
+     * Polls the latest pipeline of the lights branch independently of the regular refresh so that the lights react within seconds. The polls
+     * are run by the {@link PollingBudget} like the regular refreshes.
+     */
+    private synchronized void startWatcher() {
+        etags.clear();
+        lastPollMillis = 0;
+        if (Strings.isNullOrEmpty(ConfigProvider.getInstance().getShowLightsForBranch(project))) {
+            PollingBudget.getInstance().unregister(this);
+            return;
         }
+        logger.debug("Starting watcher for lights branch");
+        PollingBudget.getInstance().register(this);
     }
 
-    public void showState(Map<Mapping, List<PipelineJobStatus>> statuses) {
-        String lightsForBranch = ConfigProvider.getInstance().getShowLightsForBranch(project);
-        if (Strings.isNullOrEmpty(lightsForBranch)) {
-            //IntelliJ doesn't seem to allow to unsubscribe from an event, so if the user changed the config not to watch a branch this will still be called
-            logger.debug("No branch to watch lights for set");
+    @Override
+    public @NotNull Project getProject() {
+        return project;
+    }
+
+    @Override
+    public synchronized Long getNextRefreshMillis(long nowMillis) {
+        if (project.isDisposed() || lightsApi == null || isPolling || Strings.isNullOrEmpty(ConfigProvider.getInstance().getShowLightsForBranch(project))) {
+            return null;
+        }
+        if (PowerSaveMode.isEnabled()) {
+            //Resumed when the power save mode is disabled
+            return null;
+        }
+        //Slowed down like the regular refresh while the IDE or the tool window is in the background
+        final int slowdownFactor = project.getService(BackgroundUpdateService.class).getSlowdownFactor();
+        return lastPollMillis + TimeUnit.SECONDS.toMillis(POLL_INTERVAL_SECONDS) * slowdownFactor;
+    }
+
+    @Override
+    public int getRefreshCost(long nowMillis) {
+        return 1;
+    }
+
+    /**
+     * Hands the poll to a virtual thread. The next poll is due when this one is finished so that a slow gitlab doesn't cause polls to pile
+     * up.
+     */
+    @Override
+    public synchronized void refresh() {
+        isPolling = true;
+        pollExecutor.execute(() -> {
+            try {
+                pollLatestPipeline();
+            } finally {
+                synchronized (this) {
+                    isPolling = false;
+                    lastPollMillis = System.currentTimeMillis();
+                }
+                PollingBudget.getInstance().reschedule();
+            }
+        });
+    }
+
+    private void pollLatestPipeline() {
+        if (project.isDisposed() || lightsApi == null) {
             return;
         }
-        if (lightsApi == null) {
+        String lightsForBranch = ConfigProvider.getInstance().getShowLightsForBranch(project);
+        if (Strings.isNullOrEmpty(lightsForBranch)) {
             return;
         }
         String projectId = null;
@@ -75,48 +166,102 @@ public class LightsControl {
             projectId = split[1];
         }
 
-        Optional<PipelineJobStatus> status = Optional.empty();
-        for (Map.Entry<Mapping, List<PipelineJobStatus>> entry : statuses.entrySet()) {
-            if (projectId != null && !projectId.equals(entry.getKey().getGitlabProjectId())) {
+        for (Mapping mapping : getMappingsToWatch(projectId)) {
+            if (PipelineViewerConfigApp.getInstance().remotesAskAgainNextTime.contains(mapping.getRemote())) {
+                //The user cancelled the token dialog, the regular refresh skips it as well
                 continue;
             }
-            for (PipelineJobStatus pipelineJobStatus : entry.getValue()) {
-                if (pipelineJobStatus.branchName.equals(lightsForBranch)) {
-                    status = Optional.of(pipelineJobStatus);
-                    break;
+            final GitlabService.LatestPipeline latest;
+            try {
+                latest = GitlabService.loadLatestPipeline(mapping, lightsForBranch, etags.get(getEtagKey(mapping, lightsForBranch)));
+            } catch (GitlabService.LoginException e) {
+                if (e.getStatusCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                    logger.info("Unable to log in to load latest pipeline for " + lightsForBranch + " in " + mapping.getRemote());
+                    project.getService(GitlabService.class).handleLoginError(mapping);
+                    return;
                 }
+                //Gitlab also returns 404 if the branch has no pipeline. Projects which can't be accessed are reported by the regular refresh
+                logger.debug("No pipeline found for ", lightsForBranch, " in ", mapping.getRemote());
+                continue;
+            } catch (IOException e) {
+                logger.debug("Unable to load latest pipeline for ", lightsForBranch, ": ", e.getMessage());
+                return;
             }
+            if (latest.etag != null) {
+                etags.put(getEtagKey(mapping, lightsForBranch), latest.etag);
+            }
+            if (latest.notModified) {
+                logger.debug("Latest pipeline for ", lightsForBranch, " not modified");
+                return;
+            }
+            showStatus(latest.pipeline.getId(), PipelineStatus.fromValue(latest.pipeline.getStatus()));
+            return;
         }
 
+        logger.debug("No pipeline found for ", lightsForBranch);
+        synchronized (this) {
+            if (handledPipelineId != -1) {
+                lightsApi.turnAllOff();
+                handledPipelineId = -1;
+                handledStatus = null;
+            }
+        }
+    }
 
-        if (status.isPresent()) {
-            //Don't enable any lights twice so that when the user turned the light off it doesn't get turned on again for the same run
-            if (handledRuns.contains(status.get())) {
-                logger.debug("Already shown light for ", status.get());
-                return;
+    private static String getEtagKey(Mapping mapping, String branch) {
+        return mapping.getHost() + ";" + mapping.getGitlabProjectId() + ";" + branch;
+    }
+
+    private List<Mapping> getMappingsToWatch(String projectId) {
+        if (projectId != null) {
+            final Mapping mapping = ConfigProvider.getInstance().getMappingByProjectId(projectId);
+            return mapping == null ? Collections.emptyList() : Collections.singletonList(mapping);
+        }
+        final List<Mapping> mappings = new ArrayList<>();
+        for (GitRepository repository : project.getService(GitService.class).getNonIgnoredRepositories()) {
+            for (GitRemote remote : repository.getRemotes()) {
+                for (String url : remote.getUrls()) {
+                    final Mapping mapping = ConfigProvider.getInstance().getMappingByRemoteUrl(url);
+                    if (mapping != null && !mappings.contains(mapping)) {
+                        mappings.add(mapping);
+                    }
+                }
             }
+        }
+        return mappings;
+    }
+
+    private synchronized void showStatus(long pipelineId, PipelineStatus status) {
+        //Don't enable any lights twice so that when the user turned the light off it doesn't get turned on again for the same run
+        if (pipelineId == handledPipelineId && status == handledStatus) {
+            logger.debug("Already shown light for pipeline ", pipelineId, " with status ", status);
+            return;
+        }
 
-            //When showing yellow don't turn off red or green so that the info is still kept visible even after a new run has started
-            String result = status.get().result;
-            switch (result) {
-                case "running":
-                    logger.debug("Showing build state light for running pipeline ", status.get());
-                    lightsApi.turnOnColor(LightsWindowsLibrary.Light.YELLOW, false);
-                    break;
-                case "failed":
-                    logger.debug("Showing failure pipeline ", status.get());
-                    lightsApi.turnOnColor(LightsWindowsLibrary.Light.RED, true);
-                    break;
-                case "success":
-                    logger.debug("Showing success for pipeline ", status.get());
-                    lightsApi.turnOnColor(LightsWindowsLibrary.Light.GREEN, true);
-                    break;
+        //When showing yellow don't turn off red or green so that the info is still kept visible even after a new run has started
+        switch (status) {
+            case RUNNING -> {
+                logger.debug("Showing build state light for running pipeline ", pipelineId);
+                lightsApi.turnOnColor(LightsWindowsLibrary.Light.YELLOW, false);
+            }
+            case FAILED -> {
+                logger.debug("Showing failure pipeline ", pipelineId);
+                lightsApi.turnOnColor(LightsWindowsLibrary.Light.RED, true);
+            }
+            case SUCCESS -> {
+                logger.debug("Showing success for pipeline ", pipelineId);
+                lightsApi.turnOnColor(LightsWindowsLibrary.Light.GREEN, true);
+            }
+            default -> {
             }
-            handledRuns.add(status.get());
-        } else {
-            logger.debug("No pipeline found for ", lightsForBranch);
-            lightsApi.turnAllOff();
         }
+        handledPipelineId = pipelineId;
+        handledStatus = status;
+    }
+
+    @Override
+    public void dispose() {
+        PollingBudget.getInstance().unregister(this);
     }
 
     public static void turnOffAllLights() {
@@ -0,0 +1,43 @@
+package de.sist.gitlab.pipelinemonitor.metrics;
+
+import com.intellij.openapi.diagnostic.Logger;
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures work done on the EDT. Use with try-with-resources:
+ * <pre>
+ * try (EdtTimer ignored = EdtTimer.start("table.rebuild")) {
+ *     ...
+ * }
+ * </pre>
+ * The duration is recorded in {@link PluginMetrics} under "edt." + name. A warning is logged if it exceeds the configured threshold.
+ */
+public class EdtTimer implements AutoCloseable {
+
+    private static final Logger logger = Logger.getInstance(EdtTimer.class);
+
+    private final String name;
+    private final long start = System.nanoTime();
+
+    private EdtTimer(String name) {
+        this.name = name;
+    }
+
+    public static EdtTimer start(String name) {
+        return new EdtTimer(name);
+    }
+
+    @Override
+    public void close() {
+        final long nanos = System.nanoTime() - start;
+        final Histogram histogram = PluginMetrics.histogram("edt." + name);
+        histogram.record(nanos);
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        final int threshold = PipelineViewerConfigApp.getInstance().edtWarningThresholdMillis;
+        if (threshold > 0 && millis > threshold) {
+            logger.warn(String.format("%s took %dms (threshold: %dms). Total: %s", name, millis, threshold, histogram));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.sist.gitlab.pipelinemonitor.metrics;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in fixed buckets. Thread safe and without allocations, so it can be used for frequent work like painting the table.
+ */
+public class Histogram {
+
+    //Upper bounds in milliseconds, the last bucket contains everything above
+    private static final long[] BUCKETS = {1, 5, 10, 20, 50, 100, 200, 500, 1000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    public double getAverageMillis() {
+        final long currentCount = count.get();
+        return currentCount == 0 ? 0 : totalNanos.get() / (double) currentCount / 1_000_000;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket containing the percentile or {@link Long#MAX_VALUE} if it's above the last bucket
+     */
+    public long getPercentileMillis(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        final long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return BUCKETS[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner buckets = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < counts.length(); i++) {
+            final long bucketCount = counts.get(i);
+            if (bucketCount > 0) {
+                buckets.add((i < BUCKETS.length ? "<=" + BUCKETS[i] : ">" + BUCKETS[BUCKETS.length - 1]) + "ms: " + bucketCount);
+            }
+        }
+        return String.format("count=%d, avg=%.2fms, max=%dms, buckets=%s", getCount(), getAverageMillis(), getMaxMillis(), buckets);
+    }
+}
@@ -0,0 +1,32 @@
+package de.sist.gitlab.pipelinemonitor.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plugin wide registry of timing histograms by name.
+ */
+public class PluginMetrics {
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, x -> new Histogram());
+    }
+
+    /**
+     * @return all histograms, sorted by name
+     */
+    public static Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(HISTOGRAMS);
+    }
+
+    public static String dump() {
+        final StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Histogram> entry : getHistograms().entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        return builder.toString();
+    }
+}
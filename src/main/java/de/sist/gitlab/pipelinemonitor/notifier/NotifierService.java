@@ -4,6 +4,7 @@ import com.intellij.notification.*;
 import com.intellij.notification.impl.NotificationsConfigurationImpl;
 import com.intellij.notification.impl.NotificationsManagerImpl;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.popup.Balloon;
@@ -19,25 +20,27 @@ import de.sist.gitlab.pipelinemonitor.config.ConfigProvider;
 import de.sist.gitlab.pipelinemonitor.config.Mapping;
 import de.sist.gitlab.pipelinemonitor.git.GitService;
 import de.sist.gitlab.pipelinemonitor.lights.LightsControl;
+import de.sist.gitlab.pipelinemonitor.metrics.EdtTimer;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
 import java.util.List;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class NotifierService {
 
     private static final Logger logger = Logger.getInstance(NotifierService.class);
 
-    private static final List<String> KNOWN_STATUSES = Arrays.asList("pending", "running", "canceled", "failed", "success", "skipped");
+    private static final Set<PipelineStatus> STATUSES_WITH_OWN_NOTIFICATION_GROUP = EnumSet.of(PipelineStatus.PENDING, PipelineStatus.RUNNING, PipelineStatus.CANCELED, PipelineStatus.FAILED, PipelineStatus.SUCCESS, PipelineStatus.SKIPPED);
+    private static final Set<PipelineStatus> ERROR_STATUSES = EnumSet.of(PipelineStatus.FAILED, PipelineStatus.CANCELED, PipelineStatus.SKIPPED);
     private final PipelineFilter statusFilter;
     private final Project project;
 
     private final List<Balloon> openBalloons = new ArrayList<>();
     private final GitService gitService;
 
-    private Set<PipelineJobStatus> shownNotifications;
+    //Mappings for which the first pipelines were loaded. Notifications are only shown for changes after that
+    private final Set<Mapping> initializedMappings = new HashSet<>();
 
     private final NotificationGroup errorNotificationGroup;
 
@@ -47,7 +50,7 @@ public class NotifierService {
 
         errorNotificationGroup = NotificationGroupManager.getInstance().getNotificationGroup("de.sist.gitlab.pipelinemonitor.genericNotificationGroup");
 
-        project.getMessageBus().connect().subscribe(ReloadListener.RELOAD, this::showStatusNotifications);
+        project.getMessageBus().connect().subscribe(PipelinesChangedListener.PIPELINES_CHANGED, ConflatingDelivery.pipelinesChanged(project, "notifier", this::showStatusNotifications));
         gitService = project.getService(GitService.class);
     }
 
@@ -61,44 +64,66 @@ public class NotifierService {
         Notifications.Bus.notify(notification, project);
     }
 
-    private void showStatusNotifications(Map<Mapping, List<PipelineJobStatus>> mappingToPipelines) {
-//        enableDebugModeIfApplicable();
-        if (shownNotifications == null) {
-            //Don't show notifications for pipeline statuses from before the program was started
-            if (!mappingToPipelines.isEmpty()) {
-                shownNotifications = mappingToPipelines.values().stream().flatMap(Collection::stream).collect(Collectors.toSet());
+    private void showStatusNotifications(PipelinesDelta delta, Map<Mapping, List<PipelineJobStatus>> mappingToPipelines) {
+//        enableDebugModeIfApplicable(delta);
+        List<PipelineJobStatus> filteredStatuses = new ArrayList<>();
+        for (Mapping mapping : delta.getAffectedMappings()) {
+            final Map<Long, PipelinesDelta.Change> changesById = new HashMap<>();
+            for (PipelinesDelta.Change change : delta.getChanges(mapping)) {
+                if (!change.isRemoved()) {
+                    changesById.put(change.getPipelineId(), change);
+                }
+            }
+            if (changesById.isEmpty()) {
+                continue;
             }
+            if (initializedMappings.add(mapping)) {
+                //Don't show notifications for pipeline statuses from before the program was started
+                continue;
+            }
+            //The whole list is filtered because the filter works on all pipelines of a mapping
+            statusFilter.filterPipelines(mapping, mappingToPipelines.getOrDefault(mapping, Collections.emptyList()), true)
+                    .stream().filter(x -> {
+                        final PipelinesDelta.Change change = changesById.get(x.getId());
+                        return change != null
+                                && PipelineStatus.isInterestingTransition(change.isAdded() ? null : change.getBefore().getStatus(), x.getStatus())
+                                && getDisplayTypeForStatus(x.getStatus()) != NotificationDisplayType.NONE;
+                    }
+            ).forEach(filteredStatuses::add);
+        }
+        List<PipelineJobStatus> statusesToShow = getNewestStatuses(filteredStatuses);
+        if (statusesToShow.isEmpty()) {
             return;
         }
+        //Only the filtering is done in the background, balloons must be created on the EDT
+        ApplicationManager.getApplication().invokeLater(() -> {
+            for (int i = 0; i < statusesToShow.size(); i++) {
+                if (openBalloons.size() >= 3) {
+                    logger.debug("Hiding old balloon to show a newer one");
+                    openBalloons.get(0).hide();
+                }
 
-        List<PipelineJobStatus> filteredStatuses = new ArrayList<>();
-        for (Map.Entry<Mapping, List<PipelineJobStatus>> entry : mappingToPipelines.entrySet()) {
-            statusFilter.filterPipelines(entry.getKey(), entry.getValue(), true)
-                    .stream().filter(x ->
-                    !shownNotifications.contains(x)
-                            && getDisplayTypeForStatus(x.result) != NotificationDisplayType.NONE
-            ).forEach(filteredStatuses::add);
-        }
-        //Don't spam the GUI, never show more than the newest 3
-        List<PipelineJobStatus> statusesToShow = filteredStatuses.subList(Math.max(0, filteredStatuses.size() - 3), filteredStatuses.size());
-        for (int i = 0; i < statusesToShow.size(); i++) {
-            if (openBalloons.size() >= 3) {
-                logger.debug("Hiding old balloon to show a newer one");
-                openBalloons.get(0).hide();
+                PipelineJobStatus status = statusesToShow.get(i);
+                showBalloonForStatus(status, i);
             }
+        }, project.getDisposed());
+    }
 
-            PipelineJobStatus status = filteredStatuses.get(i);
-            showBalloonForStatus(status, i);
-        }
-        //Mark the other ones as read so they aren't spammed later
-        shownNotifications.addAll(statusesToShow);
+    /**
+     * Don't spam the GUI, never show more than the newest 3.
+     */
+    static List<PipelineJobStatus> getNewestStatuses(List<PipelineJobStatus> statuses) {
+        return statuses.stream()
+                .sorted(Comparator.comparingLong(PipelineJobStatus::getCreationTime).reversed())
+                .limit(3)
+                .toList();
     }
 
     @SuppressWarnings("unused")
-    private void enableDebugModeIfApplicable() {
+    private void enableDebugModeIfApplicable(PipelinesDelta delta) {
         logger.debug("Showing all notifications for developer");
         if ("strat".equals(System.getProperty("user.name"))) {
-            shownNotifications = new HashSet<>();
+            initializedMappings.addAll(delta.getAffectedMappings());
         }
     }
 
@@ -107,19 +132,19 @@ public class NotifierService {
 
         NotificationType notificationType;
         String content;
-        if (List.of("failed", "canceled", "skipped").contains(status.result)) {
+        if (ERROR_STATUSES.contains(status.getStatus())) {
             notificationType = NotificationType.ERROR;
         } else {
             notificationType = NotificationType.INFORMATION;
         }
 
-        if (getDisplayTypeForStatus(status.result) == NotificationDisplayType.TOOL_WINDOW) {
-            Notifications.Bus.notify(notificationGroup.createNotification(status.getBranchNameDisplay() + ": " + status.result, notificationType));
+        if (getDisplayTypeForStatus(status.getStatus()) == NotificationDisplayType.TOOL_WINDOW) {
+            Notifications.Bus.notify(notificationGroup.createNotification(status.getBranchNameDisplay() + ": " + status.getResult(), notificationType));
             return;
         }
-        content = status.getBranchNameDisplay() + ": <span style=\"color:" + getColorForStatus(status.result) + "\">" + status.result + "</span>"
-                + "<br>Created: " + DateTime.formatDateTime(status.creationTime)
-                + "<br>Last update: " + DateTime.formatDateTime(status.updateTime);
+        content = status.getBranchNameDisplay() + ": <span style=\"color:" + getColorForStatus(status.getStatus()) + "\">" + status.getResult() + "</span>"
+                + "<br>Created: " + DateTime.formatDateTime(status.getCreationTime())
+                + "<br>Last update: " + DateTime.formatDateTime(status.getUpdateTime());
         if (gitService.getNonIgnoredRepositories().size() > 1) {
             content = ConfigProvider.getInstance().getMappingByProjectId(status.getProjectId()).getProjectName() + " " + content;
         }
@@ -129,7 +154,7 @@ public class NotifierService {
         notification.addAction(new NotificationAction("Open in Browser") {
             @Override
             public void actionPerformed(@NotNull AnActionEvent e, @NotNull Notification notification) {
-                UrlOpener.openUrl(status.pipelineLink);
+                UrlOpener.openUrl(status.getPipelineLink());
                 notification.expire();
                 LightsControl.turnOffAllLights();
             }
@@ -137,71 +162,65 @@ public class NotifierService {
         });
 
         logger.debug("Showing notification for status ", status);
-        showBalloon(notification, getDisplayTypeForStatus(status.result), index);
-        shownNotifications.add(status);
+        showBalloon(notification, getDisplayTypeForStatus(status.getStatus()), index);
     }
 
     private NotificationGroup getNotificationGroupForStatus(PipelineJobStatus status) {
-        if (KNOWN_STATUSES.contains(status.getResult())) {
-            return NotificationGroupManager.getInstance().getNotificationGroup("de.sist.gitlab.pipelinemonitor.pipelineStatus." + status.result);
+        if (STATUSES_WITH_OWN_NOTIFICATION_GROUP.contains(status.getStatus())) {
+            return NotificationGroupManager.getInstance().getNotificationGroup("de.sist.gitlab.pipelinemonitor.pipelineStatus." + status.getResult());
         }
         return NotificationGroupManager.getInstance().getNotificationGroup("de.sist.gitlab.pipelinemonitor.pipelineStatus.other");
     }
 
     private void showBalloon(Notification notification, NotificationDisplayType displayType, int index) {
-        IdeFrame ideFrame = WindowManager.getInstance().getIdeFrame(project);
-        if (ideFrame == null) {
-            logger.error("ideFrame is null");
-        } else {
-            Rectangle bounds = ideFrame.getComponent().getBounds();
-
-            boolean hideOnClickOutside = displayType != NotificationDisplayType.STICKY_BALLOON;
-            Balloon balloon = NotificationsManagerImpl.createBalloon(ideFrame, notification, false, hideOnClickOutside, BalloonLayoutData.fullContent(), project);
-            Dimension preferredSize = new Dimension(450, 100);
-            ((BalloonImpl) balloon).getContent().setPreferredSize(preferredSize);
-
-            //Show each balloon above the previous one and keep a bit of space between
-            int lowerYBound = bounds.y + bounds.height - 111;
-            lowerYBound -= index * 110;
-
-            Point pointForRelativePosition = new Point(bounds.x + bounds.width - 259, lowerYBound);
-            balloon.addListener(new JBPopupListener() {
-                @Override
-                public void onClosed(@NotNull LightweightWindowEvent event) {
-                    openBalloons.remove(balloon);
-                }
-            });
-            balloon.show(new RelativePoint(ideFrame.getComponent(), pointForRelativePosition), Balloon.Position.above);
-            ((BalloonImpl) balloon).startFadeoutTimer(15_000);
-            openBalloons.add(balloon);
+        try (EdtTimer ignored = EdtTimer.start("notifier.balloon")) {
+            IdeFrame ideFrame = WindowManager.getInstance().getIdeFrame(project);
+            if (ideFrame == null) {
+                logger.error("ideFrame is null");
+            } else {
+                Rectangle bounds = ideFrame.getComponent().getBounds();
+
+                boolean hideOnClickOutside = displayType != NotificationDisplayType.STICKY_BALLOON;
+                Balloon balloon = NotificationsManagerImpl.createBalloon(ideFrame, notification, false, hideOnClickOutside, BalloonLayoutData.fullContent(), project);
+                Dimension preferredSize = new Dimension(450, 100);
+                ((BalloonImpl) balloon).getContent().setPreferredSize(preferredSize);
+
+                //Show each balloon above the previous one and keep a bit of space between
+                int lowerYBound = bounds.y + bounds.height - 111;
+                lowerYBound -= index * 110;
+
+                Point pointForRelativePosition = new Point(bounds.x + bounds.width - 259, lowerYBound);
+                balloon.addListener(new JBPopupListener() {
+                    @Override
+                    public void onClosed(@NotNull LightweightWindowEvent event) {
+                        openBalloons.remove(balloon);
+                    }
+                });
+                balloon.show(new RelativePoint(ideFrame.getComponent(), pointForRelativePosition), Balloon.Position.above);
+                ((BalloonImpl) balloon).startFadeoutTimer(15_000);
+                openBalloons.add(balloon);
+            }
         }
     }
 
-    private String getColorForStatus(String result) {
-        switch (result) {
-            case "running":
-                return "orange";
-            case "pending":
-                return "grey";
-            case "success":
-                return "green";
-            case "failed":
-                return "red";
-            case "skipped":
-            case "canceled":
-                return "blue";
-        }
-        return "";
-
+    private String getColorForStatus(PipelineStatus status) {
+        return switch (status) {
+            case RUNNING -> "orange";
+            case PENDING -> "grey";
+            case SUCCESS -> "green";
+            case FAILED -> "red";
+            case SKIPPED, CANCELED -> "blue";
+            default -> "";
+        };
     }
 
     @NotNull
-    private String getDisplayIdForStatus(String status) {
-        return "GitLab Pipeline Viewer - status " + status;
+    private String getDisplayIdForStatus(PipelineStatus status) {
+        return "GitLab Pipeline Viewer - status " + status.getValue();
     }
 
 
-    private NotificationDisplayType getDisplayTypeForStatus(String status) {
+    private NotificationDisplayType getDisplayTypeForStatus(PipelineStatus status) {
         return NotificationsConfigurationImpl.getSettings(getDisplayIdForStatus(status)).getDisplayType();
     }
 
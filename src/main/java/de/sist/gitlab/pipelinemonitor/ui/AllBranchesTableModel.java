@@ -0,0 +1,212 @@
+package de.sist.gitlab.pipelinemonitor.ui;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import de.sist.gitlab.pipelinemonitor.DateTime;
+import de.sist.gitlab.pipelinemonitor.PipelineJobStatus;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+import de.sist.gitlab.pipelinemonitor.gitlab.AllBranchesLoader;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Table model for the "all branches" mode. Pages are loaded from gitlab when the table asks for their rows (i.e. when they're scrolled into
+ * view). Only the last {@link #MAX_CACHED_PAGES} used pages are kept. Must only be used on the EDT.
+ */
+class AllBranchesTableModel extends AbstractTableModel {
+
+    private static final Logger logger = Logger.getInstance(AllBranchesTableModel.class);
+
+    static final int PAGE_SIZE = 50;
+    static final int MAX_CACHED_PAGES = 20;
+    private static final String[] COLUMNS = {"Branch", "Result", "Time", "Pipeline"};
+    static final int PIPELINE_COLUMN = 3;
+    //Loading a page waits for gitlab, a virtual thread doesn't block a pooled thread meanwhile
+    private static final ExecutorService pageExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("GitLab branches ", 0).factory());
+
+    private final Map<Integer, List<BranchRow>> pages = new LinkedHashMap<>(MAX_CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<BranchRow>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private final PageLoader pageLoader;
+    private Mapping mapping;
+    private String search;
+    private int rowCount;
+    //Incremented on every reset so that responses for an old mapping or search are discarded
+    private int generation;
+
+    AllBranchesTableModel() {
+        this(AllBranchesLoader::loadPage);
+    }
+
+    AllBranchesTableModel(PageLoader pageLoader) {
+        this.pageLoader = pageLoader;
+    }
+
+    /**
+     * Discards all loaded pages and starts loading the first page for the given mapping and search.
+     *
+     * @param mapping null to unload everything
+     */
+    void reset(Mapping mapping, String search) {
+        this.mapping = mapping;
+        this.search = search;
+        pages.clear();
+        loadingPages.clear();
+        generation++;
+        rowCount = 0;
+        fireTableDataChanged();
+        if (mapping != null) {
+            requestPage(0);
+        }
+    }
+
+    /**
+     * @return the pipeline shown in the given row or null if it's not loaded or there is none
+     */
+    PipelineJobStatus getPipeline(int rowIndex) {
+        final BranchRow branch = getBranch(rowIndex);
+        return branch == null ? null : branch.pipeline;
+    }
+
+    /**
+     * @param page starting with 0
+     */
+    boolean isLoaded(int page) {
+        //Unlike get this doesn't count as a use of the page
+        return pages.containsKey(page);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        final int page = rowIndex / PAGE_SIZE;
+        if (!pages.containsKey(page)) {
+            requestPage(page);
+            return columnIndex == 0 ? "Loading..." : "";
+        }
+        final BranchRow branch = getBranch(rowIndex);
+        if (branch == null) {
+            return "";
+        }
+        return switch (columnIndex) {
+            case 0 -> branch.branchName;
+            case 1 -> branch.resultText;
+            case 2 -> branch.getCreationTimeDisplay();
+            case PIPELINE_COLUMN -> branch.pipelineLink;
+            default -> "";
+        };
+    }
+
+    private BranchRow getBranch(int rowIndex) {
+        final List<BranchRow> branches = pages.get(rowIndex / PAGE_SIZE);
+        if (branches == null || rowIndex % PAGE_SIZE >= branches.size()) {
+            return null;
+        }
+        return branches.get(rowIndex % PAGE_SIZE);
+    }
+
+    private void requestPage(int page) {
+        if (mapping == null || !loadingPages.add(page)) {
+            return;
+        }
+        final int requestGeneration = generation;
+        final Mapping requestMapping = mapping;
+        final String requestSearch = search;
+        pageExecutor.execute(() -> {
+            AllBranchesLoader.Page loaded;
+            try {
+                loaded = pageLoader.load(requestMapping, requestSearch, page + 1, PAGE_SIZE);
+            } catch (Exception e) {
+                logger.info("Unable to load page " + page + " of branches for " + requestMapping.getRemote(), e);
+                loaded = null;
+            }
+            final AllBranchesLoader.Page result = loaded;
+            //Computed here so that painting a cell doesn't have to
+            final List<BranchRow> rows = result == null ? Collections.emptyList() : result.branches.stream().map(BranchRow::new).toList();
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (requestGeneration != generation) {
+                    logger.debug("Discarding outdated page ", page);
+                    return;
+                }
+                loadingPages.remove(page);
+                //Store an empty page on errors so it's not requested again on every paint. It's loaded again on the next reset
+                pages.put(page, rows);
+                if (result != null && result.total != rowCount) {
+                    rowCount = result.total;
+                    fireTableDataChanged();
+                } else {
+                    final int firstRow = page * PAGE_SIZE;
+                    final int lastRow = Math.min(rowCount, firstRow + PAGE_SIZE) - 1;
+                    if (lastRow >= firstRow) {
+                        fireTableRowsUpdated(firstRow, lastRow);
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Loads a page of branches, see {@link AllBranchesLoader#loadPage}.
+     */
+    interface PageLoader {
+        /**
+         * @param page starting with 1
+         */
+        AllBranchesLoader.Page load(Mapping mapping, String search, int page, int perPage) throws Exception;
+    }
+
+    /**
+     * A loaded branch with everything that's displayed, see {@link PipelineRow}.
+     */
+    private static class BranchRow {
+        private final String branchName;
+        private final PipelineJobStatus pipeline;
+        private final String resultText;
+        private final String pipelineLink;
+        //If a time is shown as "Today" depends on the current day, so the formatted value is only valid for the day it was formatted on
+        private String creationTimeDisplay;
+        private long creationTimeDisplayStartOfDay;
+
+        private BranchRow(AllBranchesLoader.BranchPipeline branch) {
+            branchName = branch.branchName;
+            pipeline = branch.pipeline;
+            resultText = pipeline == null ? "" : pipeline.getResult();
+            pipelineLink = pipeline == null ? "" : pipeline.getPipelineLink();
+            creationTimeDisplay = pipeline == null ? "" : DateTime.formatDateTime(pipeline.getCreationTime());
+            creationTimeDisplayStartOfDay = DateTime.getStartOfToday();
+        }
+
+        /**
+         * Must only be called on the EDT.
+         */
+        private String getCreationTimeDisplay() {
+            final long startOfToday = DateTime.getStartOfToday();
+            if (pipeline != null && creationTimeDisplayStartOfDay != startOfToday) {
+                creationTimeDisplay = DateTime.formatDateTime(pipeline.getCreationTime());
+                creationTimeDisplayStartOfDay = startOfToday;
+            }
+            return creationTimeDisplay;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package de.sist.gitlab.pipelinemonitor.ui;
 
-import com.google.common.base.Strings;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
@@ -25,11 +25,15 @@ import com.intellij.ui.table.JBTable;
 import com.intellij.util.messages.MessageBus;
 import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.TextTransferable;
+import com.intellij.util.ui.UIUtil;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
 import de.sist.gitlab.pipelinemonitor.*;
 import de.sist.gitlab.pipelinemonitor.config.*;
 import de.sist.gitlab.pipelinemonitor.git.GitService;
 import de.sist.gitlab.pipelinemonitor.gitlab.GitlabService;
 import de.sist.gitlab.pipelinemonitor.lights.LightsControl;
+import de.sist.gitlab.pipelinemonitor.metrics.EdtTimer;
 import git4idea.GitUtil;
 import git4idea.branch.GitBrancher;
 import git4idea.repo.GitRepository;
@@ -40,7 +44,6 @@ import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
-import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableRowSorter;
@@ -50,12 +53,12 @@ import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.font.TextAttribute;
-import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @SuppressWarnings({"Convert2Lambda", "ReplaceNullCheck"})
 public class GitlabToolWindow {
@@ -67,6 +70,8 @@ public class GitlabToolWindow {
     private static final String SOURCE_BRANCH_PLACEHOLDER = "%SOURCE_BRANCH%";
     private static final String TARGET_BRANCH_PLACEHOLDER = "%TARGET_BRANCH%";
     private static final String NEW_MERGE_REQUEST_URL_TEMPLATE = "%GITLAB_URL%/-/merge_requests/new?utf8=%E2%9C%93&merge_request%5Bsource_project_id%5D=%PROJECT_ID%&merge_request%5Bsource_branch%5D=%SOURCE_BRANCH%&merge_request%5Btarget_project_id%5D=%PROJECT_ID%";
+    private static final int DISPLAY_UPDATE_DELAY_MILLIS = 300;
+    private static final JBColor SUCCESS_WITH_WARNINGS_COLOR = new JBColor(new Color(195, 199, 22), new Color(195, 199, 22));
     private static final String NEW_MERGE_REQUEST_URL_TARGET_BRANCH_POSTFIX = "&merge_request%5Btarget_branch%5D=%TARGET_BRANCH%";
 
     private final Banner banner = new Banner();
@@ -74,9 +79,22 @@ public class GitlabToolWindow {
     private final JTable pipelineTable;
     private JScrollPane tableScrollPane;
     private JPanel tablePanel;
-    private boolean initialLoad = true;
+    //Incremented for each requested display update so that only the latest computed rows are shown
+    private final AtomicLong displayGeneration = new AtomicLong();
+    //Generation of the latest update that was applied. Changes can only be applied to rows if no update was discarded since
+    private final AtomicLong appliedGeneration = new AtomicLong();
+    //Changes since the last update of the table or null if the rows need to be computed (again)
+    private final AtomicReference<PipelinesDelta> pendingDelta = new AtomicReference<>();
+    private final MergingUpdateQueue displayUpdateQueue;
+    private final AtomicInteger requestedDisplayUpdates = new AtomicInteger();
 
     private final PipelineTableModel tableModel;
+    private final AllBranchesTableModel allBranchesModel = new AllBranchesTableModel();
+    private final TableCellRenderer projectCellRenderer = new ProjectCellRenderer();
+    private final TableCellRenderer branchCellRenderer = new BranchCellRenderer();
+    private final TableCellRenderer statusCellRenderer = new StatusCellRenderer();
+    private final TableCellRenderer dateCellRenderer = new DateCellRenderer();
+    private final TableCellRenderer linkCellRenderer = new LinkCellRenderer();
 
     private final GitlabService gitlabService;
     private final BackgroundUpdateService backgroundUpdateService;
@@ -87,6 +105,8 @@ public class GitlabToolWindow {
     private final GitService gitService;
 
     private JCheckBox showForAllCheckbox;
+    private JCheckBox allBranchesCheckbox;
+    private String filterText = "";
     JPanel actionPanel;
 
 
@@ -97,42 +117,44 @@ public class GitlabToolWindow {
         messageBus = project.getMessageBus();
         statusFilter = project.getService(PipelineFilter.class);
         gitService = project.getService(GitService.class);
+        //Only active while the tool window is showing. Requests made while it's hidden are executed when it's shown again
+        displayUpdateQueue = new MergingUpdateQueue("GitLab pipeline table", DISPLAY_UPDATE_DELAY_MILLIS, true, toolWindowContent, project);
 
         tableModel = new PipelineTableModel();
         final MessageBusConnection messageBusConnection = messageBus.connect();
-        messageBusConnection.subscribe(ReloadListener.RELOAD, new ReloadListener() {
-            @Override
-            public void reload(Map<Mapping, List<PipelineJobStatus>> pipelineInfos) {
-                if (project.isDisposed()) {
-                    messageBusConnection.disconnect();
-                    return;
-                }
-                ApplicationManager.getApplication().invokeLater(GitlabToolWindow.this::updatePipelinesDisplay);
+        messageBusConnection.subscribe(PipelinesChangedListener.PIPELINES_CHANGED, ConflatingDelivery.pipelinesChanged(project, "tool window", (delta, pipelineInfos) -> {
+            if (project.isDisposed()) {
+                messageBusConnection.disconnect();
+                return;
             }
-        });
+            updatePipelinesDisplay(delta);
+        }));
         if (!gitlabService.getPipelineInfos().isEmpty()) {
             //Window was not displayed on startup and didn't receive any events, so we need to update the pipelines now
-            ApplicationManager.getApplication().invokeLater(this::updatePipelinesDisplay);
+            updatePipelinesDisplay();
         }
         updateTableWhenMonitoringMultipleRemotesButOnlyShowingPipelinesForOne();
         pipelineTable = new JBTable(tableModel) {
             @Override
             public TableCellRenderer getCellRenderer(int row, int column) {
                 TableCellRenderer cellRenderer = super.getCellRenderer(row, column);
+                if (isAllBranchesMode()) {
+                    return cellRenderer;
+                }
                 if (column == 0) {
-                    return getProjectCellRenderer();
+                    return projectCellRenderer;
                 }
                 if (column == 1) {
-                    return getBranchCellRenderer();
+                    return branchCellRenderer;
                 }
                 if (column == 2) {
-                    return getStatusCellRenderer();
+                    return statusCellRenderer;
                 }
                 if (column == 3) {
-                    return getDateCellRenderer();
+                    return dateCellRenderer;
                 }
                 if (column == 4 || column == 5) {
-                    return getLinkCellRenderer();
+                    return linkCellRenderer;
                 }
                 return cellRenderer;
             }
@@ -146,8 +168,18 @@ public class GitlabToolWindow {
                 column.setPreferredWidth(Math.max(rendererWidth + getIntercellSpacing().width, column.getPreferredWidth()));
                 return component;
             }
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                //Timed once per paint, timing every cell would cost more than rendering it
+                try (EdtTimer ignored = EdtTimer.start("table.paint")) {
+                    super.paintComponent(g);
+                }
+            }
         };
-        pipelineTable.setAutoCreateRowSorter(true);
+        //The model keeps its rows in the default order, the sorter only sorts if the user selects a column
+        tableSorter = new TableRowSorter<>(tableModel);
+        pipelineTable.setRowSorter(tableSorter);
         pipelineTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         pipelineTable.setUpdateSelectionOnSort(true);
         pipelineTable.getTableHeader().setReorderingAllowed(false);
@@ -157,6 +189,11 @@ public class GitlabToolWindow {
         pipelineTable.addMouseMotionListener(urlMouseAdapter);
 
         pipelineTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        pipelineTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                refreshSelectedPipelineIfNotFinal();
+            }
+        });
         pipelineTable.setCellSelectionEnabled(true);
 
         pipelineTable.setIntercellSpacing(new Dimension(5, 0));
@@ -173,6 +210,8 @@ public class GitlabToolWindow {
                 handleEnabledState(project);
                 showForAllCheckbox.setSelected(PipelineViewerConfigProject.getInstance(project).isShowPipelinesForAll());
                 toggleShowForAllCheckboxVisibility();
+                //Display settings are applied when the rows are built
+                updatePipelinesDisplay();
             }
         });
         toggleShowForAllCheckboxVisibility();
@@ -209,8 +248,7 @@ public class GitlabToolWindow {
             tableScrollPane.setEnabled(enabled);
 
             if (!enabled) {
-                tableModel.rows.clear();
-                tableModel.fireTableDataChanged();
+                tableModel.setRows(Collections.emptyList());
             }
         });
     }
@@ -221,7 +259,9 @@ public class GitlabToolWindow {
             @Override
             public void actionPerformed(ActionEvent e) {
                 PipelineViewerConfigProject.getInstance(project).setShowLightsForBranch(selectedPipelineStatus.getBranchName());
+                project.getService(LightsControl.class).initialize(project);
                 runLoadPipelinesTask();
+                updatePipelinesDisplay();
             }
         });
         branchPopupMenu.add(new AbstractAction("Never show results for this branch") {
@@ -236,6 +276,7 @@ public class GitlabToolWindow {
             public void actionPerformed(ActionEvent e) {
                 ConfigProvider.getInstance().getBranchesToWatch(project).add(selectedPipelineStatus.getBranchName());
                 runLoadPipelinesTask();
+                updatePipelinesDisplay();
             }
         });
         branchPopupMenu.add(new AbstractAction("Create merge request for this branch") {
@@ -296,10 +337,39 @@ public class GitlabToolWindow {
         } catch (ArrayIndexOutOfBoundsException e) {
             return null;
         }
+        if (isAllBranchesMode()) {
+            return selectedRow == -1 ? null : allBranchesModel.getPipeline(selectedRow);
+        }
         if (selectedRow == -1 || selectedRow > tableModel.rows.size()) {
             return null;
         }
-        return tableModel.rows.get(selectedRow);
+        return tableModel.rows.get(selectedRow).getPipeline();
+    }
+
+    /**
+     * The user probably wants to know the current state of a selected running pipeline, so it's loaded before the next scheduled refresh.
+     */
+    private void refreshSelectedPipelineIfNotFinal() {
+        if (isAllBranchesMode()) {
+            return;
+        }
+        final PipelineJobStatus selectedPipeline;
+        try {
+            selectedPipeline = getSelectedBranch();
+        } catch (Exception e) {
+            //Selection events are also fired while the table is updated
+            logger.debug(e);
+            return;
+        }
+        if (selectedPipeline == null || selectedPipeline.getStatus().isFinal()) {
+            return;
+        }
+        final Mapping mapping = ConfigProvider.getInstance().getMappingByProjectId(selectedPipeline.getProjectId());
+        if (mapping == null) {
+            return;
+        }
+        logger.debug("Refreshing selected pipeline ", selectedPipeline);
+        backgroundUpdateService.updateRef(List.of(mapping), selectedPipeline.getBranchName(), GitlabRequestQueue.Priority.SELECTION);
     }
 
     private int getSelectedTableRow() {
@@ -323,17 +393,13 @@ public class GitlabToolWindow {
             protected void textChanged(@NotNull DocumentEvent e) {
                 try {
                     String text = e.getDocument().getText(0, e.getDocument().getLength());
-                    if (text == null || text.isEmpty()) {
-                        tableSorter.setRowFilter(null);
-                    } else {
-                        RowFilter<PipelineTableModel, Integer> filter = new RowFilter<>() {
-                            @Override
-                            public boolean include(Entry<? extends PipelineTableModel, ? extends Integer> entry) {
-                                return entry.getModel().rows.get(entry.getIdentifier()).getBranchNameDisplay().toLowerCase().contains(text.toLowerCase());
-                            }
-                        };
-                        tableSorter.setRowFilter(filter);
+                    filterText = text;
+                    if (isAllBranchesMode()) {
+                        //Searched by gitlab, so wait until the user stops typing
+                        displayUpdateQueue.queue(Update.create("allBranchesSearch", GitlabToolWindow.this::reloadAllBranches));
+                        return;
                     }
+                    applyRowFilter(text);
                 } catch (BadLocationException ex) {
                     logger.error(ex);
                 }
@@ -349,10 +415,14 @@ public class GitlabToolWindow {
                 if (ConfigProvider.getInstance().isConfigOpen()) {
                     return;
                 }
-                updatePipelinesDisplay();
                 PipelineViewerConfigProject.getInstance(project).setShowPipelinesForAll(showForAllCheckbox.isSelected());
+                updatePipelinesDisplay();
             }
         });
+        allBranchesCheckbox = new JCheckBox("All branches");
+        allBranchesCheckbox.setToolTipText("Show the latest pipeline of every remote branch. Pages are loaded from gitlab while scrolling");
+        allBranchesCheckbox.addItemListener(e -> setAllBranchesMode(allBranchesCheckbox.isSelected()));
+        actionPanel.add(allBranchesCheckbox);
         actionPanel.add(filterField);
 
         addBanner(project);
@@ -366,6 +436,10 @@ public class GitlabToolWindow {
         AnActionButton refreshActionButton = new ActionButton("Refresh", AllIcons.Actions.Refresh) {
             @Override
             public void actionPerformed(@NotNull AnActionEvent e) {
+                if (isAllBranchesMode()) {
+                    reloadAllBranches();
+                    return;
+                }
                 backgroundUpdateService.update(project, true);
             }
         };
@@ -442,6 +516,68 @@ public class GitlabToolWindow {
 
     }
 
+    private void applyRowFilter(String text) {
+        if (text == null || text.isEmpty()) {
+            tableSorter.setRowFilter(null);
+        } else {
+            RowFilter<PipelineTableModel, Integer> filter = new RowFilter<>() {
+                @Override
+                public boolean include(Entry<? extends PipelineTableModel, ? extends Integer> entry) {
+                    return entry.getModel().rows.get(entry.getIdentifier()).getBranchNameDisplay().toLowerCase().contains(text.toLowerCase());
+                }
+            };
+            tableSorter.setRowFilter(filter);
+        }
+    }
+
+    private boolean isAllBranchesMode() {
+        return pipelineTable.getModel() == allBranchesModel;
+    }
+
+    private void setAllBranchesMode(boolean allBranches) {
+        if (allBranches == isAllBranchesMode()) {
+            return;
+        }
+        logger.debug("Setting all branches mode: ", allBranches);
+        if (allBranches) {
+            //Rows are loaded in pages in the order returned by gitlab, so they can't be sorted or filtered locally
+            pipelineTable.setRowSorter(null);
+            pipelineTable.setModel(allBranchesModel);
+            reloadAllBranches();
+        } else {
+            //Free the loaded pages
+            allBranchesModel.reset(null, null);
+            pipelineTable.setModel(tableModel);
+            pipelineTable.setRowSorter(tableSorter);
+            //The filter may have been changed while searching all branches
+            applyRowFilter(filterText);
+            updatePipelinesDisplay();
+        }
+    }
+
+    private void reloadAllBranches() {
+        if (!isAllBranchesMode()) {
+            return;
+        }
+        allBranchesModel.reset(getAllBranchesMapping(), filterText);
+    }
+
+    /**
+     * @return the mapping of the current repository or the first one if it can't be determined
+     */
+    private Mapping getAllBranchesMapping() {
+        final Set<Mapping> mappings = gitlabService.getPipelineInfos().keySet();
+        final GitRepository repository = gitService.guessCurrentRepository();
+        if (repository != null) {
+            for (Mapping mapping : mappings) {
+                if (Objects.equals(gitService.getRepositoryByRemoteUrl(mapping.getRemote()), repository)) {
+                    return mapping;
+                }
+            }
+        }
+        return mappings.stream().findFirst().orElse(null);
+    }
+
     private void runLoadPipelinesTask() {
         final boolean started = backgroundUpdateService.startBackgroundTask();
         if (!started) {
@@ -449,32 +585,135 @@ public class GitlabToolWindow {
         }
     }
 
+    /**
+     * Requests an update of the table. Requests made within a short time are merged into one.
+     */
     private void updatePipelinesDisplay() {
-        tableScrollPane.setEnabled(true);
-        toggleShowForAllCheckboxVisibility();
+        pendingDelta.set(null);
+        requestedDisplayUpdates.incrementAndGet();
+        displayUpdateQueue.queue(Update.create("updatePipelinesDisplay", this::computePipelinesDisplay));
+    }
 
-        tableModel.rows.clear();
-        tableModel.rows.addAll(getStatusesToShow());
-        logger.debug(String.format("Showing %d statuses for %d projects", tableModel.rows.size(), gitlabService.getPipelineInfos().size()));
-        final TableColumn column = pipelineTable.getColumn(pipelineTable.getColumnName(0));
-        final boolean multipleProjects = !tableModel.rows.isEmpty() && tableModel.rows.stream().map(x -> x.projectId).collect(Collectors.toSet()).size() == 1;
-        if (multipleProjects || !showForAllCheckbox.isSelected()) {
-            column.setMinWidth(0);
-            column.setMaxWidth(0);
-            column.setPreferredWidth(0);
-            column.setWidth(0);
-        } else {
-            column.setMinWidth(15);
-            column.setMaxWidth(200);
-            column.setPreferredWidth(75);
-            column.setWidth(75);
+    /**
+     * Requests an update of the table for the given changed pipelines. Changes requested within a short time are merged.
+     */
+    private void updatePipelinesDisplay(PipelinesDelta delta) {
+        pendingDelta.getAndUpdate(x -> x == null ? null : PipelinesDelta.merge(x, delta));
+        requestedDisplayUpdates.incrementAndGet();
+        displayUpdateQueue.queue(Update.create("updatePipelinesDisplay", this::computePipelinesDisplay));
+    }
+
+    /**
+     * Computes the rows to show on a background thread and applies them on the EDT. Results of outdated computations are discarded.
+     * If only pipelines already shown changed the rows of those are replaced, otherwise all rows are computed again.
+     */
+    private void computePipelinesDisplay() {
+        final int requests = requestedDisplayUpdates.getAndSet(0);
+        if (requests > 1) {
+            logger.debug("Coalesced ", requests, " requests to update the table");
         }
-        tableModel.fireTableDataChanged();
+        final PipelinesDelta delta = pendingDelta.getAndSet(PipelinesDelta.EMPTY);
+        if (delta != null && appliedGeneration.get() == displayGeneration.get() && isApplicableToRows(delta)) {
+            if (!delta.isEmpty()) {
+                updateChangedRows(delta);
+            }
+            return;
+        }
+        final long generation = displayGeneration.incrementAndGet();
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            final boolean showForAll = PipelineViewerConfigProject.getInstance(project).isShowPipelinesForAll();
+            final Map<Mapping, List<PipelineJobStatus>> pipelineInfos = gitlabService.getPipelineInfos();
+            final List<PipelineJobStatus> statuses = getStatusesToShow(pipelineInfos, showForAll);
+            final List<PipelineRow> rows = statuses.stream().map(x -> new PipelineRow(x, project)).toList();
+            final RowModel rowModel = new RowModel(rows, isShowProjectColumn(statuses, showForAll));
+            logger.debug(String.format("Computed %d statuses to show for %d projects", rows.size(), pipelineInfos.size()));
+
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (generation != displayGeneration.get()) {
+                    logger.debug("Discarding outdated rows");
+                    return;
+                }
+                applyRowModel(rowModel);
+                appliedGeneration.set(generation);
+            }, project.getDisposed());
+        });
+    }
+
+    private void updateChangedRows(PipelinesDelta delta) {
+        final long generation = displayGeneration.incrementAndGet();
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            final List<PipelineRow> changedRows = delta.getChanged().stream().map(x -> new PipelineRow(x.getAfter(), project)).toList();
+            logger.debug(String.format("Computed %d changed rows", changedRows.size()));
+
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (generation != displayGeneration.get()) {
+                    logger.debug("Discarding outdated changed rows");
+                    return;
+                }
+                try (EdtTimer ignored = EdtTimer.start("table.update")) {
+                    tableModel.updateRows(changedRows);
+                }
+                appliedGeneration.set(generation);
+            }, project.getDisposed());
+        });
+    }
+
+    /**
+     * @return true if the changes don't affect which pipelines are shown and in which order, so that only the rows of the changed
+     * pipelines need to be replaced. That's the case if no pipeline was added or removed and each changed pipeline is still shown in
+     * the same place because branch, creation time, MR and whether the status is final stayed the same
+     */
+    static boolean isApplicableToRows(PipelinesDelta delta) {
+        if (!delta.getAdded().isEmpty() || !delta.getRemoved().isEmpty()) {
+            return false;
+        }
+        return delta.getChanged().stream().allMatch(x -> {
+            final PipelineJobStatus before = x.getBefore();
+            final PipelineJobStatus after = x.getAfter();
+            return before.getStatus().isConclusive() == after.getStatus().isConclusive()
+                    && before.getCreationTime() == after.getCreationTime()
+                    && Objects.equals(before.getBranchNameDisplay(), after.getBranchNameDisplay())
+                    && Objects.equals(before.getMergeRequestLink(), after.getMergeRequestLink());
+        });
+    }
+
+    /**
+     * @return true if the project column is needed because pipelines of more than one project (or none at all) may be shown
+     */
+    static boolean isShowProjectColumn(List<PipelineJobStatus> statuses, boolean showForAll) {
+        final boolean singleProject = !statuses.isEmpty() && statuses.stream().map(PipelineJobStatus::getProjectId).collect(Collectors.toSet()).size() == 1;
+        return !singleProject && showForAll;
+    }
+
+    void applyRowModel(RowModel rowModel) {
+        try (EdtTimer ignored = EdtTimer.start("table.rebuild")) {
+            tableScrollPane.setEnabled(true);
+            toggleShowForAllCheckboxVisibility();
+
+            tableModel.setRows(rowModel.rows());
+            if (isAllBranchesMode()) {
+                //Columns are adjusted when switching back
+                return;
+            }
+            final TableColumn column = pipelineTable.getColumn(pipelineTable.getColumnName(0));
+            if (!rowModel.showProjectColumn()) {
+                column.setMinWidth(0);
+                column.setMaxWidth(0);
+                column.setPreferredWidth(0);
+                column.setWidth(0);
+            } else {
+                column.setMinWidth(15);
+                column.setMaxWidth(200);
+                column.setPreferredWidth(75);
+                column.setWidth(75);
+            }
 
-        if (initialLoad) {
-            //Prevent resetting the sorting selected by the user on next update
-            sortTableByBranchName();
-            initialLoad = false;
         }
     }
 
@@ -483,14 +722,17 @@ public class GitlabToolWindow {
      *
      * @return List of filtered statuses.
      */
-    private List<PipelineJobStatus> getStatusesToShow() {
+    private List<PipelineJobStatus> getStatusesToShow(Map<Mapping, List<PipelineJobStatus>> pipelineInfos, boolean showForAll) {
         List<PipelineJobStatus> newRows = new ArrayList<>();
-        for (Map.Entry<Mapping, List<PipelineJobStatus>> mappingAndPipelines : gitlabService.getPipelineInfos().entrySet()) {
+        GitRepository currentRepository = null;
+        if (pipelineInfos.size() > 1 && !showForAll) {
+            currentRepository = ReadAction.compute(gitService::guessCurrentRepository);
+        }
+        for (Map.Entry<Mapping, List<PipelineJobStatus>> mappingAndPipelines : pipelineInfos.entrySet()) {
 
             //If pipelines for multiple projects exist and pipelines are only to be shown for the current one skip all others
             final Mapping mapping = mappingAndPipelines.getKey();
-            if (gitlabService.getPipelineInfos().size() > 1 && !showForAllCheckbox.isSelected()) {
-                final GitRepository currentRepository = gitService.guessCurrentRepository();
+            if (pipelineInfos.size() > 1 && !showForAll) {
                 final GitRepository repoForMapping = gitService.getRepositoryByRemoteUrl(mapping.getRemote());
                 if (!Objects.equals(repoForMapping, currentRepository)) {
                     logger.debug("Not showing pipelines for ", repoForMapping, " because it doesn't match the current repo ", currentRepository);
@@ -499,7 +741,8 @@ public class GitlabToolWindow {
             }
 
             List<PipelineJobStatus> statuses = new ArrayList<>(statusFilter.filterPipelines(mapping, mappingAndPipelines.getValue(), false));
-            statuses.sort(Comparator.comparing(x -> ((PipelineJobStatus) x).creationTime).reversed());
+            //Needed to find the latest final pipeline per branch. The rows themselves are sorted by the table model
+            statuses.sort(Comparator.comparingLong(PipelineJobStatus::getCreationTime).reversed());
             Map<String, List<PipelineJobStatus>> branchesToStatuses = statuses.stream().collect(Collectors.groupingBy(PipelineJobStatus::getBranchNameDisplay));
             logger.debug("Found ", branchesToStatuses.size(), " branches to show pipelines for");
             for (Map.Entry<String, List<PipelineJobStatus>> entry : branchesToStatuses.entrySet()) {
@@ -516,29 +759,21 @@ public class GitlabToolWindow {
                 }
             }
         }
-        newRows.sort(Comparator.comparing(x -> ((PipelineJobStatus) x).creationTime).reversed());
         return newRows;
     }
 
     private boolean isFinalStatus(PipelineJobStatus status) {
-        return Stream.of("failed", "success").anyMatch(x -> x.equals(status.result));
-    }
-
-    private void sortTableByBranchName() {
-        tableSorter = new TableRowSorter<>(tableModel);
-        pipelineTable.setRowSorter(tableSorter);
-        List<RowSorter.SortKey> sortKeys = new ArrayList<>();
-        sortKeys.add(new RowSorter.SortKey(0, SortOrder.ASCENDING));
-        sortKeys.add(new RowSorter.SortKey(1, SortOrder.ASCENDING));
-        sortKeys.add(new RowSorter.SortKey(4, SortOrder.DESCENDING));
-        tableSorter.setSortKeys(sortKeys);
-        tableSorter.sort();
+        return status.getStatus().isConclusive();
     }
 
     public JPanel getContent() {
         return toolWindowContent;
     }
 
+    JTable getPipelineTable() {
+        return pipelineTable;
+    }
+
     private void createUIComponents() {
     }
 
@@ -569,6 +804,13 @@ public class GitlabToolWindow {
                     }
 
                     int selectedColumn = pipelineTable.columnAtPoint(e.getPoint());
+                    if (isAllBranchesMode()) {
+                        if (selectedColumn == AllBranchesTableModel.PIPELINE_COLUMN) {
+                            logger.debug("Opening URL ", selectedPipelineStatus.getPipelineLink());
+                            UrlOpener.openUrl(selectedPipelineStatus.getPipelineLink());
+                        }
+                        return;
+                    }
                     if (selectedColumn != 4 && selectedColumn != 5) {
                         return;
                     }
@@ -577,8 +819,8 @@ public class GitlabToolWindow {
                     if (selectedColumn == 4) {
                         url = selectedPipelineStatus.getPipelineLink();
                     } else {
-                        if (selectedPipelineStatus.mergeRequestLink != null) {
-                            url = selectedPipelineStatus.mergeRequestLink;
+                        if (selectedPipelineStatus.getMergeRequestLink() != null) {
+                            url = selectedPipelineStatus.getMergeRequestLink();
                         } else {
                             url = getNewMergeRequestUrl(selectedPipelineStatus);
                         }
@@ -593,7 +835,8 @@ public class GitlabToolWindow {
             public void mouseMoved(MouseEvent e) {
                 int columnIndex = pipelineTable.columnAtPoint(e.getPoint());
                 int rowIndex = pipelineTable.rowAtPoint(e.getPoint());
-                if (columnIndex == 3 && rowIndex > -1 && rowIndex < tableModel.getRowCount()) {
+                final int linkColumn = isAllBranchesMode() ? AllBranchesTableModel.PIPELINE_COLUMN : 3;
+                if (columnIndex == linkColumn && rowIndex > -1 && rowIndex < pipelineTable.getModel().getRowCount()) {
                     pipelineTable.setCursor(new Cursor(Cursor.HAND_CURSOR));
                 } else {
                     pipelineTable.setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
@@ -602,161 +845,98 @@ public class GitlabToolWindow {
         };
     }
 
-    private TableCellRenderer getLinkCellRenderer() {
-        return new TableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                final String url = (String) value;
-                if (url == null && column == 4) {
-                    //Pipeline empty, shouldn't happen, but who knows...
-                    logger.warn("Empty URL for pipeline");
-                    return new JBLabel("");
-                }
-                final JLabel label;
-                if (PipelineViewerConfigApp.getInstance().getDisplayType() == PipelineViewerConfigApp.DisplayType.ICON) {
-                    if (value == null) {
-                        label = new JBLabel(IconLoader.getIcon("/toolWindow/add.png", GitlabToolWindow.class));
-                    } else {
-                        label = new JBLabel(IconLoader.getIcon("/toolWindow/external_link_arrow.png", GitlabToolWindow.class));
-                    }
-                } else {
-                    //Links and IDs
-                    if (value == null) {
-                        //Show a link to create a new merge request
-                        label = new JBLabel(IconLoader.getIcon("/toolWindow/add.png", GitlabToolWindow.class));
-                    } else {
-                        if (PipelineViewerConfigApp.getInstance().getDisplayType() == PipelineViewerConfigApp.DisplayType.LINK) {
-                            label = new JBLabel(url);
-                        } else {
-                            label = new JBLabel(url.substring(url.lastIndexOf("/") + 1));
-                        }
-                        label.setForeground(JBColor.BLUE);
-                        Map<TextAttribute, Object> attributes = new HashMap<>(label.getFont().getAttributes());
-                        attributes.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
-                        label.setFont(label.getFont().deriveFont(attributes));
-                    }
-                }
-                if (column == 4 && PipelineViewerConfigApp.getInstance().getDisplayType() != PipelineViewerConfigApp.DisplayType.LINK) {
-                    label.setToolTipText(url);
-                }
-                return label;
-            }
-        };
-    }
-
+    /**
+     * Renders all cells of a column with the same label, configured from the precomputed values of the row.
+     */
+    private abstract class RowLabelRenderer implements TableCellRenderer {
+        protected final JBLabel label = new JBLabel();
 
-    private TableCellRenderer getDateCellRenderer() {
-        return new TableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                ZonedDateTime dateTime = (ZonedDateTime) value;
-                return new JLabel(DateTime.formatDateTime(dateTime));
-            }
-        };
-    }
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            label.setText(null);
+            label.setIcon(null);
+            label.setToolTipText(null);
+            label.setForeground(UIUtil.getLabelForeground());
+            label.setFont(UIUtil.getLabelFont());
+            configure(tableModel.rows.get(table.convertRowIndexToModel(row)), column);
+            return label;
+        }
 
-    private TableCellRenderer getProjectCellRenderer() {
-        return new TableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                String projectId = (String) value;
-                if (ConfigProvider.getInstance().getMappingByProjectId(projectId) != null) {
-                    return new JLabel(Strings.nullToEmpty(ConfigProvider.getInstance().getMappingByProjectId(projectId).getProjectName()));
-                }
-                return new JBLabel();
-            }
-        };
+        protected abstract void configure(PipelineRow row, int column);
     }
 
-    private TableCellRenderer getBranchCellRenderer() {
-        return new TableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                String branchName = (String) value;
-                JLabel jLabel = new JLabel(branchName);
-
-                if (Objects.equals(PipelineViewerConfigProject.getInstance(project).getShowLightsForBranch(), branchName)) {
-                    jLabel.setIcon(IconLoader.getIcon("/trafficLights.png", GitlabToolWindow.class));
-                } else if (PipelineFilter.isMatch(branchName, ConfigProvider.getInstance().getBranchesToWatch(project))) {
-                    jLabel.setIcon(AllIcons.General.InspectionsEye);
-                }
+    private class LinkCellRenderer extends RowLabelRenderer {
+        private Font underlinedFontBase;
+        private Font underlinedFont;
 
-                return jLabel;
+        @Override
+        protected void configure(PipelineRow row, int column) {
+            final PipelineRow.LinkDisplay linkDisplay = column == 4 ? row.getPipelineLinkDisplay() : row.getMergeRequestLinkDisplay();
+            label.setText(linkDisplay.text());
+            label.setIcon(linkDisplay.icon());
+            label.setToolTipText(linkDisplay.toolTip());
+            if (linkDisplay.underlined()) {
+                label.setForeground(JBColor.BLUE);
+                label.setFont(getUnderlinedFont(label.getFont()));
             }
-        };
-    }
+        }
 
-    private TableCellRenderer getStatusCellRenderer() {
-        return new TableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                String status = (String) value;
-                JBLabel label = new JBLabel(status);
-                switch (status) {
-                    case "running":
-                        label.setForeground(JBColor.ORANGE);
-                        break;
-                    case "pending":
-                        label.setForeground(JBColor.GRAY);
-                        break;
-                    case "success":
-                        label.setForeground(JBColor.GREEN);
-                        break;
-                    case "success (warnings)":
-                        label.setForeground(new JBColor(new Color(195, 199, 22), new Color(195, 199, 22)));
-                        break;
-                    case "failed":
-                        label.setForeground(JBColor.RED);
-                        break;
-                    case "skipped":
-                    case "canceled":
-                        label.setForeground(JBColor.BLUE);
-                        break;
-                }
-                return label;
+        private Font getUnderlinedFont(Font font) {
+            if (font != underlinedFontBase) {
+                Map<TextAttribute, Object> attributes = new HashMap<>(font.getAttributes());
+                attributes.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
+                underlinedFont = font.deriveFont(attributes);
+                underlinedFontBase = font;
             }
-        };
+            return underlinedFont;
+        }
     }
 
-    private static class PipelineTableModel extends AbstractTableModel {
-
-        public List<PipelineJobStatus> rows = new ArrayList<>();
-        public List<TableRowDefinition> definitions = Arrays.asList(
-                new TableRowDefinition("Project", x -> x.projectId),
-                new TableRowDefinition("Branch", PipelineJobStatus::getBranchNameDisplay),
-                new TableRowDefinition("Result", x -> {
-                    String result = x.result;
-                    if (x.statusGroup != null && x.statusGroup.contains("warnings")) {
-                        result += " (warnings)";
-                    }
-                    return result;
-                }),
-                new TableRowDefinition("Time", x -> x.creationTime),
-                new TableRowDefinition("Pipeline", x -> x.pipelineLink),
-                new TableRowDefinition("MR", x -> x.mergeRequestLink)
-        );
-
+    private class DateCellRenderer extends RowLabelRenderer {
         @Override
-        public int getRowCount() {
-            return rows.size();
+        protected void configure(PipelineRow row, int column) {
+            label.setText(row.getCreationTimeDisplay());
         }
+    }
 
+    private class ProjectCellRenderer extends RowLabelRenderer {
         @Override
-        public int getColumnCount() {
-            return definitions.size();
+        protected void configure(PipelineRow row, int column) {
+            label.setText(row.getProjectName());
         }
+    }
 
+    private class BranchCellRenderer extends RowLabelRenderer {
         @Override
-        public Object getValueAt(int rowIndex, int columnIndex) {
-            PipelineJobStatus row = rows.get(rowIndex);
-            return definitions.get(columnIndex).tableModelRowFunction.apply(row);
+        protected void configure(PipelineRow row, int column) {
+            label.setText(row.getBranchNameDisplay());
+            label.setIcon(row.getBranchIcon());
         }
+    }
 
+    private class StatusCellRenderer extends RowLabelRenderer {
         @Override
-        public String getColumnName(int columnIndex) {
-            return definitions.get(columnIndex).title;
+        protected void configure(PipelineRow row, int column) {
+            label.setText(row.getResultText());
+            switch (row.getPipeline().getStatus()) {
+                case RUNNING -> label.setForeground(JBColor.ORANGE);
+                case PENDING -> label.setForeground(JBColor.GRAY);
+                case SUCCESS -> {
+                    if (row.hasWarnings()) {
+                        label.setForeground(SUCCESS_WITH_WARNINGS_COLOR);
+                    } else {
+                        label.setForeground(JBColor.GREEN);
+                    }
+                }
+                case FAILED -> label.setForeground(JBColor.RED);
+                case SKIPPED, CANCELED -> label.setForeground(JBColor.BLUE);
+                default -> {
+                }
+            }
         }
+    }
 
+    record RowModel(List<PipelineRow> rows, boolean showProjectColumn) {
     }
 
     private abstract class ActionButton extends AnActionButton {
@@ -780,15 +960,4 @@ public class GitlabToolWindow {
 
     }
 
-
-    private static class TableRowDefinition {
-        public String title;
-        public Function<PipelineJobStatus, Object> tableModelRowFunction;
-
-        public TableRowDefinition(String title, Function<PipelineJobStatus, Object> tableModelRowFunction) {
-            this.title = title;
-            this.tableModelRowFunction = tableModelRowFunction;
-        }
-    }
-
 }
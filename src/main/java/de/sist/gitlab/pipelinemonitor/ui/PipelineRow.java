@@ -0,0 +1,150 @@
+package de.sist.gitlab.pipelinemonitor.ui;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.IconLoader;
+import de.sist.gitlab.pipelinemonitor.DateTime;
+import de.sist.gitlab.pipelinemonitor.PipelineFilter;
+import de.sist.gitlab.pipelinemonitor.PipelineJobStatus;
+import de.sist.gitlab.pipelinemonitor.config.ConfigProvider;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp;
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigProject;
+
+import javax.swing.*;
+import java.util.Objects;
+
+/**
+ * Row of the pipeline table. Everything that's displayed is computed when the row is created (in the background) so that painting a cell
+ * doesn't have to compute anything.
+ */
+class PipelineRow {
+
+    private final PipelineJobStatus pipeline;
+    private final String projectName;
+    private final Icon branchIcon;
+    private final String resultText;
+    private final boolean warnings;
+    private final String pipelineLink;
+    private final LinkDisplay pipelineLinkDisplay;
+    private final LinkDisplay mergeRequestLinkDisplay;
+    //If a time is shown as "Today" depends on the current day, so the formatted value is only valid for the day it was formatted on
+    private String creationTimeDisplay;
+    private long creationTimeDisplayStartOfDay = -1;
+
+    PipelineRow(PipelineJobStatus pipeline, Project project) {
+        this.pipeline = pipeline;
+        final Mapping mapping = ConfigProvider.getInstance().getMappingByProjectId(pipeline.getProjectId());
+        projectName = mapping == null || mapping.getProjectName() == null ? "" : mapping.getProjectName();
+
+        final String branchName = pipeline.getBranchNameDisplay();
+        if (Objects.equals(PipelineViewerConfigProject.getInstance(project).getShowLightsForBranch(), branchName)) {
+            branchIcon = IconLoader.getIcon("/trafficLights.png", GitlabToolWindow.class);
+        } else if (PipelineFilter.isMatch(branchName, ConfigProvider.getInstance().getBranchesToWatch(project))) {
+            branchIcon = AllIcons.General.InspectionsEye;
+        } else {
+            branchIcon = null;
+        }
+
+        warnings = pipeline.getStatusGroup() != null && pipeline.getStatusGroup().contains("warnings");
+        resultText = warnings ? pipeline.getResult() + " (warnings)" : pipeline.getResult();
+        pipelineLink = pipeline.getPipelineLink();
+
+        final PipelineViewerConfigApp.DisplayType displayType = PipelineViewerConfigApp.getInstance().getDisplayType();
+        pipelineLinkDisplay = LinkDisplay.of(pipelineLink, true, displayType);
+        mergeRequestLinkDisplay = LinkDisplay.of(pipeline.getMergeRequestLink(), false, displayType);
+    }
+
+    public PipelineJobStatus getPipeline() {
+        return pipeline;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getBranchNameDisplay() {
+        return pipeline.getBranchNameDisplay();
+    }
+
+    public Icon getBranchIcon() {
+        return branchIcon;
+    }
+
+    public String getResultText() {
+        return resultText;
+    }
+
+    public boolean hasWarnings() {
+        return warnings;
+    }
+
+    public String getPipelineLink() {
+        return pipelineLink;
+    }
+
+    public LinkDisplay getPipelineLinkDisplay() {
+        return pipelineLinkDisplay;
+    }
+
+    public LinkDisplay getMergeRequestLinkDisplay() {
+        return mergeRequestLinkDisplay;
+    }
+
+    /**
+     * Must only be called on the EDT.
+     */
+    public String getCreationTimeDisplay() {
+        final long startOfToday = DateTime.getStartOfToday();
+        if (creationTimeDisplayStartOfDay != startOfToday) {
+            creationTimeDisplay = DateTime.formatDateTime(pipeline.getCreationTime());
+            creationTimeDisplayStartOfDay = startOfToday;
+        }
+        return creationTimeDisplay;
+    }
+
+    /**
+     * @return true if the other row for the same pipeline would be displayed the same way
+     */
+    public boolean isDisplayedLike(PipelineRow other) {
+        return pipeline.getStatus() == other.pipeline.getStatus()
+                && pipeline.getCreationTime() == other.pipeline.getCreationTime()
+                && Objects.equals(getBranchNameDisplay(), other.getBranchNameDisplay())
+                && Objects.equals(projectName, other.projectName)
+                && Objects.equals(branchIcon, other.branchIcon)
+                && Objects.equals(resultText, other.resultText)
+                && Objects.equals(pipelineLinkDisplay, other.pipelineLinkDisplay)
+                && Objects.equals(mergeRequestLinkDisplay, other.mergeRequestLinkDisplay);
+    }
+
+    /**
+     * How a link column is displayed.
+     *
+     * @param text       null if only the icon is shown
+     * @param icon       null if only the text is shown
+     * @param underlined if the text is shown like a link
+     */
+    record LinkDisplay(String text, Icon icon, boolean underlined, String toolTip) {
+
+        private static final LinkDisplay EMPTY = new LinkDisplay("", null, false, null);
+
+        static LinkDisplay of(String url, boolean pipelineColumn, PipelineViewerConfigApp.DisplayType displayType) {
+            if (url == null && pipelineColumn) {
+                //Pipeline empty, shouldn't happen, but who knows...
+                return EMPTY;
+            }
+            final String toolTip = pipelineColumn && displayType != PipelineViewerConfigApp.DisplayType.LINK ? url : null;
+            if (url == null) {
+                //Show a link to create a new merge request
+                return new LinkDisplay(null, IconLoader.getIcon("/toolWindow/add.png", GitlabToolWindow.class), false, toolTip);
+            }
+            if (displayType == PipelineViewerConfigApp.DisplayType.ICON) {
+                return new LinkDisplay(null, IconLoader.getIcon("/toolWindow/external_link_arrow.png", GitlabToolWindow.class), false, toolTip);
+            }
+            if (displayType == PipelineViewerConfigApp.DisplayType.LINK) {
+                return new LinkDisplay(url, null, true, toolTip);
+            }
+            return new LinkDisplay(url.substring(url.lastIndexOf("/") + 1), null, true, toolTip);
+        }
+    }
+}
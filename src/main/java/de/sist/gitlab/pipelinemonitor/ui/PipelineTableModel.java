@@ -0,0 +1,142 @@
+package de.sist.gitlab.pipelinemonitor.ui;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Model of the pipeline table. Must only be used on the EDT.
+ */
+class PipelineTableModel extends AbstractTableModel {
+
+    //Project, branch, newest first
+    private static final Comparator<PipelineRow> DEFAULT_ORDER = Comparator.comparing((PipelineRow x) -> x.getPipeline().getProjectId())
+            .thenComparing(PipelineRow::getBranchNameDisplay)
+            .thenComparing(Comparator.comparingLong((PipelineRow x) -> x.getPipeline().getCreationTime()).reversed())
+            .thenComparing(Comparator.comparingLong((PipelineRow x) -> x.getPipeline().getId()).reversed());
+
+    public List<PipelineRow> rows = new ArrayList<>();
+    //The values are used for sorting, the renderers use the precomputed display values of the rows
+    public List<TableRowDefinition> definitions = Arrays.asList(
+            new TableRowDefinition("Project", x -> x.getPipeline().getProjectId()),
+            new TableRowDefinition("Branch", PipelineRow::getBranchNameDisplay),
+            new TableRowDefinition("Result", PipelineRow::getResultText),
+            new TableRowDefinition("Time", x -> x.getPipeline().getCreationTime()),
+            new TableRowDefinition("Pipeline", PipelineRow::getPipelineLink),
+            new TableRowDefinition("MR", x -> x.getPipeline().getMergeRequestLink())
+    );
+
+    /**
+     * Replaces the rows, matching old and new rows by pipeline ID. Only events for removed, changed and added rows are fired so that
+     * selection and scroll position are kept. The rows are kept in {@link #DEFAULT_ORDER}, new rows are inserted at their position.
+     */
+    public void setRows(List<PipelineRow> newRows) {
+        //A pipeline may be contained more than once (e.g. for two mappings of the same project). Only one row is kept for it
+        final Map<Long, PipelineRow> newRowsById = new LinkedHashMap<>();
+        for (PipelineRow newRow : newRows) {
+            newRowsById.put(newRow.getPipeline().getId(), newRow);
+        }
+        if (rows.isEmpty()) {
+            if (!newRowsById.isEmpty()) {
+                rows.addAll(newRowsById.values());
+                rows.sort(DEFAULT_ORDER);
+                fireTableRowsInserted(0, rows.size() - 1);
+            }
+            return;
+        }
+
+        //Remove from the end so that indexes of the rows still to check don't change
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (!newRowsById.containsKey(rows.get(i).getPipeline().getId())) {
+                rows.remove(i);
+                fireTableRowsDeleted(i, i);
+            }
+        }
+
+        final List<PipelineRow> toInsert = new ArrayList<>();
+        int i = 0;
+        while (i < rows.size()) {
+            final PipelineRow newRow = newRowsById.remove(rows.get(i).getPipeline().getId());
+            if (newRow == null || DEFAULT_ORDER.compare(rows.get(i), newRow) != 0) {
+                //No new row if another row for the same pipeline was already matched. Otherwise the row needs to be moved, e.g. because
+                //the branch is now displayed with the MR title
+                rows.remove(i);
+                fireTableRowsDeleted(i, i);
+                if (newRow != null) {
+                    toInsert.add(newRow);
+                }
+                continue;
+            }
+            final boolean changed = !rows.get(i).isDisplayedLike(newRow);
+            rows.set(i, newRow);
+            if (changed) {
+                fireTableRowsUpdated(i, i);
+            }
+            i++;
+        }
+
+        toInsert.addAll(newRowsById.values());
+        for (PipelineRow newRow : toInsert) {
+            int index = Collections.binarySearch(rows, newRow, DEFAULT_ORDER);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            rows.add(index, newRow);
+            fireTableRowsInserted(index, index);
+        }
+    }
+
+    /**
+     * Replaces the rows of the given pipelines in place, the changes must not affect the order of the rows. Pipelines without a row are
+     * ignored. Rows of pipelines that were updated later are kept because changes may be delivered after the rows were already set from
+     * a newer load.
+     */
+    public void updateRows(List<PipelineRow> changedRows) {
+        final Map<Long, PipelineRow> changedRowsById = new HashMap<>();
+        for (PipelineRow changedRow : changedRows) {
+            changedRowsById.put(changedRow.getPipeline().getId(), changedRow);
+        }
+        for (int i = 0; i < rows.size() && !changedRowsById.isEmpty(); i++) {
+            final PipelineRow changedRow = changedRowsById.remove(rows.get(i).getPipeline().getId());
+            if (changedRow == null || changedRow.getPipeline().getUpdateTime() < rows.get(i).getPipeline().getUpdateTime()) {
+                continue;
+            }
+            final boolean changed = !rows.get(i).isDisplayedLike(changedRow);
+            rows.set(i, changedRow);
+            if (changed) {
+                fireTableRowsUpdated(i, i);
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return definitions.size();
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        PipelineRow row = rows.get(rowIndex);
+        return definitions.get(columnIndex).tableModelRowFunction.apply(row);
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return definitions.get(columnIndex).title;
+    }
+
+    static class TableRowDefinition {
+        public String title;
+        public Function<PipelineRow, Object> tableModelRowFunction;
+
+        public TableRowDefinition(String title, Function<PipelineRow, Object> tableModelRowFunction) {
+            this.title = title;
+            this.tableModelRowFunction = tableModelRowFunction;
+        }
+    }
+}
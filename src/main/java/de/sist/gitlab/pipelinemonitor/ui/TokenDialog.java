@@ -3,6 +3,7 @@ package de.sist.gitlab.pipelinemonitor.ui;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
 import de.sist.gitlab.pipelinemonitor.config.TokenType;
+import de.sist.gitlab.pipelinemonitor.metrics.EdtTimer;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.Nullable;
 
@@ -37,10 +38,12 @@ public class TokenDialog extends JDialog {
 
         public Wrapper(Project project, String message, String oldToken, TokenType tokenType, Consumer<Pair<String, TokenType>> responseConsumer) {
             super(project, false, IdeModalityType.IDE);
-            this.tokenDialog = new TokenDialog(message, oldToken, tokenType);
-            this.responseConsumer = responseConsumer;
-            setTitle("Gitlab Pipeline Viewer - Access Token");
-            init();
+            try (EdtTimer ignored = EdtTimer.start("tokenDialog.setup")) {
+                this.tokenDialog = new TokenDialog(message, oldToken, tokenType);
+                this.responseConsumer = responseConsumer;
+                setTitle("Gitlab Pipeline Viewer - Access Token");
+                init();
+            }
         }
 
         @Override
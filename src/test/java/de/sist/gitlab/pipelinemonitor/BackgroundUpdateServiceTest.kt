@@ -0,0 +1,75 @@
+package de.sist.gitlab.pipelinemonitor
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class BackgroundUpdateServiceTest {
+
+    @Test
+    fun jitteredDelayShouldDeviateAtMostTwentyPercent() {
+        val random = Random(42)
+        val delays = (1..1000).map { BackgroundUpdateService.jitteredDelayMillis(30, random) }
+
+        assertTrue(delays.all { it in 24_000L..36_000L })
+        //Spread over the whole range so that IDEs started together drift apart
+        assertTrue(delays.min() < 25_000L)
+        assertTrue(delays.max() > 35_000L)
+    }
+
+    @Test
+    fun jitteredDelayShouldBeRefreshDelayOnAverage() {
+        val random = Random(42)
+        val average = (1..1000).map { BackgroundUpdateService.jitteredDelayMillis(30, random) }.average()
+
+        assertEquals(30_000.0, average, 500.0)
+    }
+
+    @Test
+    fun initialDelayShouldAddOffsetOfAtMostTenSeconds() {
+        val random = Random(42)
+        val delays = (1..1000).map { BackgroundUpdateService.initialDelayMillis(5, 30, random) }
+
+        assertTrue(delays.all { it in 5_000L..15_000L })
+        assertTrue(delays.min() < 6_000L)
+        assertTrue(delays.max() > 14_000L)
+    }
+
+    @Test
+    fun initialOffsetShouldNotExceedShortRefreshDelay() {
+        val random = Random(42)
+        val delays = (1..1000).map { BackgroundUpdateService.initialDelayMillis(0, 2, random) }
+
+        assertTrue(delays.all { it in 0L..2_000L })
+    }
+
+    /**
+     * 500 IDEs with the default refresh delay of 30 seconds start refreshing at the same moment, e.g. after a VPN reconnect. Without jitter
+     * all 500 would hit gitlab within the same second every 30 seconds.
+     */
+    @Test
+    fun peakRequestRateOfManyClientsShouldStayLow() {
+        val random = Random(42)
+        val requestsPerSecond = IntArray(SIMULATED_SECONDS)
+        repeat(SIMULATED_CLIENTS) {
+            var millis = BackgroundUpdateService.initialDelayMillis(0, 30, random)
+            while (millis < SIMULATED_SECONDS * 1000L) {
+                requestsPerSecond[(millis / 1000).toInt()]++
+                millis += BackgroundUpdateService.jitteredDelayMillis(30, random)
+            }
+        }
+
+        //The first refreshes are spread over 10 seconds
+        val peak = requestsPerSecond.max()
+        assertTrue("Peak of $peak requests per second", peak <= 100)
+        //Later ones drift apart further, the average is 500 / 30 per second
+        val laterPeak = requestsPerSecond.drop(300).max()
+        assertTrue("Peak of $laterPeak requests per second after 5 minutes", laterPeak <= 40)
+    }
+
+    companion object {
+        private const val SIMULATED_CLIENTS = 500
+        private const val SIMULATED_SECONDS = 600
+    }
+}
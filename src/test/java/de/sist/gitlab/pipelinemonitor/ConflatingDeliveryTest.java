@@ -0,0 +1,25 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+public class ConflatingDeliveryTest extends BasePlatformTestCase {
+
+    public void testDisposingOneSubscriberKeepsStatisticsOfOthers() {
+        final ConflatingDelivery<String> first = new ConflatingDelivery<>(getProject(), "first", x -> {
+        }, (older, newer) -> newer);
+        final ConflatingDelivery<String> second = new ConflatingDelivery<>(getProject(), "second", x -> {
+        }, (older, newer) -> newer);
+        final String prefix = getProject().getName() + " ";
+        assertTrue(ConflatingDelivery.getStatistics().containsKey(prefix + "first"));
+
+        Disposer.dispose(first);
+
+        assertFalse(ConflatingDelivery.getStatistics().containsKey(prefix + "first"));
+        assertTrue(ConflatingDelivery.getStatistics().containsKey(prefix + "second"));
+
+        Disposer.dispose(second);
+
+        assertFalse(ConflatingDelivery.getStatistics().containsKey(prefix + "second"));
+    }
+}
@@ -0,0 +1,107 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.openapi.util.Disposer
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import de.sist.gitlab.pipelinemonitor.GitlabRequestQueue.Priority
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class GitlabRequestQueueTest : BasePlatformTestCase() {
+
+    private lateinit var queue: GitlabRequestQueue
+
+    override fun setUp() {
+        super.setUp()
+        queue = GitlabRequestQueue(project)
+        Disposer.register(testRootDisposable, queue)
+    }
+
+    fun testUserRefreshCompletesWhileSlowBackgroundRefreshIsRunning() {
+        val backgroundRefresh = startSlowRequest(Priority.BACKGROUND, "refresh")
+
+        val userRefreshDone = CountDownLatch(1)
+        queue.submit(Priority.USER, "refresh") { userRefreshDone.countDown() }
+
+        assertTrue(userRefreshDone.await(5, TimeUnit.SECONDS))
+        assertFalse(backgroundRefresh.isDone)
+        backgroundRefresh.complete(null)
+    }
+
+    fun testRequestsOfSameKindRunOneAfterAnother() {
+        val first = startSlowRequest(Priority.BACKGROUND, "first")
+
+        val secondStarted = CountDownLatch(1)
+        queue.submit(Priority.BACKGROUND, "second") { secondStarted.countDown() }
+
+        assertFalse(secondStarted.await(200, TimeUnit.MILLISECONDS))
+        first.complete(null)
+        assertTrue(secondStarted.await(5, TimeUnit.SECONDS))
+    }
+
+    fun testMostImportantQueuedRequestRunsFirst() {
+        val blocking = startSlowRequest(Priority.USER, "blocking")
+        val started: MutableList<String> = CopyOnWriteArrayList()
+        val allStarted = CountDownLatch(2)
+        queue.submit(Priority.SELECTION, "selection") { started.add("selection"); allStarted.countDown() }
+        queue.submit(Priority.CHECKOUT, "checkout") { started.add("checkout"); allStarted.countDown() }
+
+        blocking.complete(null)
+
+        assertTrue(allStarted.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf("checkout", "selection"), started)
+    }
+
+    fun testQueuedRequestIsReplacedByMoreImportantOne() {
+        val blocking = startSlowRequest(Priority.CHECKOUT, "blocking")
+        val started: MutableList<String> = CopyOnWriteArrayList()
+        val done = CountDownLatch(1)
+        queue.submit(Priority.SELECTION, "ref") { started.add("selection") }
+        queue.submit(Priority.USER, "ref") { started.add("user"); done.countDown() }
+
+        blocking.complete(null)
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        //Gives a wrongly kept request the chance to run
+        Thread.sleep(200)
+        assertEquals(listOf("user"), started)
+    }
+
+    fun testLanesDontWaitForEachOther() {
+        val slowHost = startSlowRequest(Priority.USER, "refresh:slow", "https://slow.example.com")
+
+        val otherHostDone = CountDownLatch(1)
+        queue.submit(Priority.USER, "refresh:fast", "https://fast.example.com") { otherHostDone.countDown() }
+
+        assertTrue(otherHostDone.await(5, TimeUnit.SECONDS))
+        slowHost.complete(null)
+    }
+
+    fun testReplacedRequestFinishesWithReplacingOne() {
+        val blocking = startSlowRequest(Priority.CHECKOUT, "blocking")
+        val replaced = queue.submit(Priority.SELECTION, "ref") {}
+        val replacing = queue.submit(Priority.USER, "ref") {}
+        val kept = queue.submit(Priority.SELECTION, "ref") {}
+
+        assertSame(replaced, replacing)
+        assertSame(replaced, kept)
+        assertFalse(replaced.isDone)
+        blocking.complete(null)
+        replaced.get(5, TimeUnit.SECONDS)
+    }
+
+    /**
+     * @return the future that finishes the request once it was started
+     */
+    private fun startSlowRequest(priority: Priority, key: String, lane: String = GitlabRequestQueue.DEFAULT_LANE): CompletableFuture<Any?> {
+        val future = CompletableFuture<Any?>()
+        val started = CountDownLatch(1)
+        queue.submitAsync(priority, key, lane) {
+            started.countDown()
+            future
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS))
+        return future
+    }
+}
@@ -0,0 +1,68 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+
+public class PipelineJobStatusTest {
+
+    @Test
+    public void shouldDeriveLinkFromBase() {
+        assertEquals(TestPipelines.LINK_BASE + "123", pipeline(123, PipelineStatus.RUNNING).getPipelineLink());
+    }
+
+    @Test
+    public void shouldReturnStatusValueAsResult() {
+        assertEquals("success", pipeline(1, PipelineStatus.SUCCESS).getResult());
+        assertEquals("waiting_for_resource", pipeline(1, PipelineStatus.WAITING_FOR_RESOURCE).getResult());
+    }
+
+    @Test
+    public void shouldConvertTimesToDateTime() {
+        final long creationTime = Instant.parse("2024-03-01T10:15:30Z").toEpochMilli();
+        final PipelineJobStatus pipeline = new PipelineJobStatus(1, "main", "1", creationTime, creationTime + 1000, PipelineStatus.SUCCESS, TestPipelines.LINK_BASE, null);
+
+        assertEquals(creationTime, pipeline.getCreationDateTime().toInstant().toEpochMilli());
+        assertEquals(creationTime + 1000, pipeline.getUpdateDateTime().toInstant().toEpochMilli());
+    }
+
+    @Test
+    public void shouldParseStatusValues() {
+        assertEquals(PipelineStatus.SUCCESS, PipelineStatus.fromValue("success"));
+        assertEquals(PipelineStatus.WAITING_FOR_RESOURCE, PipelineStatus.fromValue("waiting_for_resource"));
+        assertEquals(PipelineStatus.UNKNOWN, PipelineStatus.fromValue("something_new"));
+        assertEquals(PipelineStatus.UNKNOWN, PipelineStatus.fromValue(null));
+    }
+
+    @Test
+    public void shouldUseDisplayNameOnlyForMergeRequestPipelines() {
+        final PipelineJobStatus pipeline = pipeline(1, PipelineStatus.SUCCESS);
+        assertEquals("main", pipeline.getBranchNameDisplay());
+        assertFalse(pipeline.isMergeRequestPipeline());
+
+        final PipelineJobStatus mergeRequestPipeline = pipeline.withMergeRequestInfo("https://gitlab.com/foo/bar/-/merge_requests/12", "!12 Some merge request", null);
+        assertEquals("!12 Some merge request", mergeRequestPipeline.getBranchNameDisplay());
+        assertTrue(mergeRequestPipeline.isMergeRequestPipeline());
+    }
+
+    @Test
+    public void shouldCopyWithMergeRequestInfo() {
+        final PipelineJobStatus pipeline = pipeline(1, PipelineStatus.SUCCESS);
+
+        final PipelineJobStatus copy = pipeline.withMergeRequestInfo("https://gitlab.com/foo/bar/-/merge_requests/12", null, "success-with-warnings");
+
+        assertEquals(pipeline, copy);
+        assertEquals("https://gitlab.com/foo/bar/-/merge_requests/12", copy.getMergeRequestLink());
+        assertEquals("success-with-warnings", copy.getStatusGroup());
+        assertFalse(copy.isMergeRequestPipeline());
+        //The original is unchanged
+        assertNull(pipeline.getMergeRequestLink());
+        assertNull(pipeline.getStatusGroup());
+    }
+
+    private static PipelineJobStatus pipeline(long id, PipelineStatus status) {
+        return TestPipelines.pipeline(id).status(status).build();
+    }
+}
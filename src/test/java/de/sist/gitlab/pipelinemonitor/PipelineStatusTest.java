@@ -0,0 +1,48 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineStatusTest {
+
+    @Test
+    public void newPipelinesShouldBeInterestingUnlessTransient() {
+        assertTrue(PipelineStatus.isInterestingTransition(null, PipelineStatus.PENDING));
+        assertTrue(PipelineStatus.isInterestingTransition(null, PipelineStatus.RUNNING));
+        assertTrue(PipelineStatus.isInterestingTransition(null, PipelineStatus.FAILED));
+        assertFalse(PipelineStatus.isInterestingTransition(null, PipelineStatus.CREATED));
+        assertFalse(PipelineStatus.isInterestingTransition(null, PipelineStatus.PREPARING));
+        assertFalse(PipelineStatus.isInterestingTransition(null, PipelineStatus.UNKNOWN));
+    }
+
+    @Test
+    public void progressShouldBeInteresting() {
+        assertTrue(PipelineStatus.isInterestingTransition(PipelineStatus.PENDING, PipelineStatus.RUNNING));
+        assertTrue(PipelineStatus.isInterestingTransition(PipelineStatus.RUNNING, PipelineStatus.SUCCESS));
+        assertTrue(PipelineStatus.isInterestingTransition(PipelineStatus.CREATED, PipelineStatus.RUNNING));
+    }
+
+    @Test
+    public void unchangedStatusShouldNotBeInteresting() {
+        for (PipelineStatus status : PipelineStatus.values()) {
+            assertFalse(status.toString(), PipelineStatus.isInterestingTransition(status, status));
+        }
+    }
+
+    @Test
+    public void transientStatusesShouldNotBeInteresting() {
+        assertFalse(PipelineStatus.isInterestingTransition(PipelineStatus.RUNNING, PipelineStatus.CANCELING));
+        assertFalse(PipelineStatus.isInterestingTransition(PipelineStatus.PENDING, PipelineStatus.WAITING_FOR_RESOURCE));
+    }
+
+    @Test
+    public void retriedPipelinesShouldBeInteresting() {
+        assertTrue(PipelineStatus.isInterestingTransition(PipelineStatus.FAILED, PipelineStatus.RUNNING));
+        assertTrue(PipelineStatus.isInterestingTransition(PipelineStatus.FAILED, PipelineStatus.PENDING));
+        assertFalse(PipelineStatus.isInterestingTransition(PipelineStatus.FAILED, PipelineStatus.CREATED));
+        assertTrue(PipelineStatus.isInterestingTransition(PipelineStatus.FAILED, PipelineStatus.SUCCESS));
+        assertTrue(PipelineStatus.isInterestingTransition(PipelineStatus.SUCCESS, PipelineStatus.FAILED));
+    }
+}
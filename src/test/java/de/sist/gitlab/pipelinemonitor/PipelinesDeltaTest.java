@@ -0,0 +1,145 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PipelinesDeltaTest {
+
+    private static final Mapping MAPPING = Mapping.toMapping("git@gitlab.com:foo/bar.git;https://gitlab.com;foo/bar;1;bar");
+    private static final Mapping OTHER_MAPPING = Mapping.toMapping("git@gitlab.com:foo/baz.git;https://gitlab.com;foo/baz;2;baz");
+
+    @Test
+    public void shouldBeEmptyWithoutChanges() {
+        final Map<Mapping, List<PipelineJobStatus>> pipelines = Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.RUNNING, 100)));
+
+        assertTrue(PipelinesDelta.compute(pipelines, Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.RUNNING, 100)))).isEmpty());
+    }
+
+    @Test
+    public void shouldFindAddedChangedAndRemoved() {
+        final PipelinesDelta delta = PipelinesDelta.compute(
+                Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.RUNNING, 100), pipeline(2, PipelineStatus.SUCCESS, 100))),
+                Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.SUCCESS, 200), pipeline(3, PipelineStatus.PENDING, 200))));
+
+        assertEquals(Set.of(MAPPING), delta.getAffectedMappings());
+        assertEquals(List.of(3L), ids(delta.getAdded()));
+        assertEquals(List.of(1L), ids(delta.getChanged()));
+        assertEquals(List.of(2L), ids(delta.getRemoved()));
+        final PipelinesDelta.Change changed = delta.getChanged().get(0);
+        assertEquals(PipelineStatus.RUNNING, changed.getBefore().getStatus());
+        assertEquals(PipelineStatus.SUCCESS, changed.getAfter().getStatus());
+    }
+
+    @Test
+    public void shouldRemoveAllPipelinesOfRemovedMapping() {
+        final PipelinesDelta delta = PipelinesDelta.compute(
+                Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.RUNNING, 100)), OTHER_MAPPING, List.of(pipeline(2, PipelineStatus.RUNNING, 100))),
+                Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.RUNNING, 100))));
+
+        assertEquals(Set.of(OTHER_MAPPING), delta.getAffectedMappings());
+        assertEquals(List.of(2L), ids(delta.getRemoved()));
+    }
+
+    @Test
+    public void mergeShouldKeepOriginalBefore() {
+        final List<PipelineJobStatus> first = List.of(pipeline(1, PipelineStatus.PENDING, 100));
+        final List<PipelineJobStatus> second = List.of(pipeline(1, PipelineStatus.RUNNING, 200));
+        final List<PipelineJobStatus> third = List.of(pipeline(1, PipelineStatus.SUCCESS, 300));
+
+        final PipelinesDelta merged = PipelinesDelta.merge(
+                PipelinesDelta.compute(Map.of(MAPPING, first), Map.of(MAPPING, second)),
+                PipelinesDelta.compute(Map.of(MAPPING, second), Map.of(MAPPING, third)));
+
+        final PipelinesDelta.Change change = merged.getChanged().get(0);
+        assertEquals(PipelineStatus.PENDING, change.getBefore().getStatus());
+        assertEquals(PipelineStatus.SUCCESS, change.getAfter().getStatus());
+    }
+
+    @Test
+    public void mergeShouldDropPipelinesAddedAndRemovedAgain() {
+        final List<PipelineJobStatus> added = List.of(pipeline(1, PipelineStatus.RUNNING, 100));
+
+        final PipelinesDelta merged = PipelinesDelta.merge(
+                PipelinesDelta.compute(Map.of(MAPPING, List.of()), Map.of(MAPPING, added)),
+                PipelinesDelta.compute(Map.of(MAPPING, added), Map.of(MAPPING, List.of())));
+
+        assertTrue(merged.isEmpty());
+    }
+
+    @Test
+    public void mergeShouldDropChangesWhichWereReverted() {
+        final List<PipelineJobStatus> before = List.of(pipeline(1, PipelineStatus.RUNNING, 100));
+        final List<PipelineJobStatus> changed = List.of(pipeline(1, PipelineStatus.FAILED, 200));
+
+        final PipelinesDelta merged = PipelinesDelta.merge(
+                PipelinesDelta.compute(Map.of(MAPPING, before), Map.of(MAPPING, changed)),
+                PipelinesDelta.compute(Map.of(MAPPING, changed), Map.of(MAPPING, before)));
+
+        assertTrue(merged.isEmpty());
+    }
+
+    @Test
+    public void mergeShouldCombineChangesOfDifferentMappings() {
+        final List<PipelineJobStatus> before = List.of(pipeline(1, PipelineStatus.RUNNING, 100));
+
+        final PipelinesDelta merged = PipelinesDelta.merge(
+                PipelinesDelta.compute(Map.of(MAPPING, before), Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.RUNNING, 100), pipeline(2, PipelineStatus.PENDING, 100)))),
+                PipelinesDelta.compute(Map.of(OTHER_MAPPING, List.of(pipeline(3, PipelineStatus.RUNNING, 100))), Map.of(OTHER_MAPPING, List.of())));
+
+        assertEquals(List.of(2L), ids(merged.getAdded()));
+        assertEquals(List.of(3L), ids(merged.getRemoved()));
+        assertEquals(Set.of(MAPPING, OTHER_MAPPING), merged.getAffectedMappings());
+    }
+
+    @Test
+    public void mergeWithEmptyShouldReturnOther() {
+        final PipelinesDelta delta = PipelinesDelta.compute(Map.of(), Map.of(MAPPING, List.of(pipeline(1, PipelineStatus.RUNNING, 100))));
+
+        assertSame(delta, PipelinesDelta.merge(PipelinesDelta.EMPTY, delta));
+        assertSame(delta, PipelinesDelta.merge(delta, PipelinesDelta.EMPTY));
+    }
+
+    @Test
+    public void shouldDiffRecordedSnapshots() throws IOException {
+        final List<PipelineJobStatus> before = load("/pipelines.json");
+        final List<PipelineJobStatus> after = load("/pipelines-updated.json");
+
+        final PipelinesDelta delta = PipelinesDelta.compute(Map.of(MAPPING, before), Map.of(MAPPING, after));
+
+        assertEquals(List.of(49L), ids(delta.getAdded()));
+        assertEquals(List.of(48L), ids(delta.getRemoved()));
+        assertEquals(List.of(47L), ids(delta.getChanged()));
+        final PipelinesDelta.Change changed = delta.getChanged().get(0);
+        assertEquals(PipelineStatus.PENDING, changed.getBefore().getStatus());
+        assertEquals(PipelineStatus.RUNNING, changed.getAfter().getStatus());
+        assertTrue(PipelinesDelta.compute(Map.of(MAPPING, after), Map.of(MAPPING, load("/pipelines-updated.json"))).isEmpty());
+    }
+
+    private static List<PipelineJobStatus> load(String resource) throws IOException {
+        try (InputStream inputStream = PipelinesDeltaTest.class.getResourceAsStream(resource)) {
+            final List<PipelineTo> pipelines = Jackson.OBJECT_MAPPER.readValue(inputStream, new TypeReference<List<PipelineTo>>() {
+            });
+            return pipelines.stream()
+                    .map(x -> new PipelineJobStatus(x.getId(), x.getRef(), "1", x.getCreatedAt().toInstant().toEpochMilli(), x.getUpdatedAt().toInstant().toEpochMilli(),
+                            PipelineStatus.fromValue(x.getStatus()), TestPipelines.LINK_BASE, x.getSource()))
+                    .toList();
+        }
+    }
+
+    private static List<Long> ids(List<PipelinesDelta.Change> changes) {
+        return changes.stream().map(PipelinesDelta.Change::getPipelineId).toList();
+    }
+
+    private static PipelineJobStatus pipeline(long id, PipelineStatus status, long updateTime) {
+        return TestPipelines.pipeline(id).status(status).updated(updateTime).build();
+    }
+}
@@ -0,0 +1,58 @@
+package de.sist.gitlab.pipelinemonitor
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class PollingBudgetTest {
+
+    private val tokens = PollingBudget.Tokens()
+
+    @Test
+    fun shouldStartFull() {
+        tokens.refill(1000, 60)
+
+        assertEquals(60.0, tokens.available, 0.0)
+    }
+
+    @Test
+    fun shouldNotTakeMoreThanAvailable() {
+        tokens.refill(1000, 60)
+
+        assertTrue(tokens.tryTake(50))
+        assertFalse(tokens.tryTake(20))
+        assertEquals(10.0, tokens.available, 0.0)
+        assertTrue(tokens.tryTake(10))
+        assertFalse(tokens.tryTake(1))
+    }
+
+    @Test
+    fun shouldRefillWithBudgetPerMinute() {
+        tokens.refill(1000, 60)
+        tokens.tryTake(60)
+
+        tokens.refill(11_000, 60)
+        assertEquals(10.0, tokens.available, 0.001)
+
+        tokens.refill(41_000, 60)
+        assertEquals(40.0, tokens.available, 0.001)
+    }
+
+    @Test
+    fun shouldNotHoldMoreThanOneMinutesBudget() {
+        tokens.refill(1000, 60)
+        tokens.tryTake(30)
+
+        tokens.refill(10 * 60_000L, 60)
+        assertEquals(60.0, tokens.available, 0.0)
+    }
+
+    @Test
+    fun shouldApplyChangedBudget() {
+        tokens.refill(1000, 60)
+
+        tokens.refill(2000, 10)
+        assertEquals(10.0, tokens.available, 0.0)
+    }
+}
@@ -0,0 +1,60 @@
+package de.sist.gitlab.pipelinemonitor
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.Instant
+import java.time.ZoneOffset
+
+class PushPollingServiceTest {
+
+    @Test
+    fun delayShouldGrowUntilMaximum() {
+        val delays = generateSequence(2000L) { PushPollingService.nextDelayMillis(it) }.take(10).toList()
+
+        assertEquals(listOf(2000L, 3000L, 4500L, 6750L, 10125L, 15187L, 20000L, 20000L, 20000L, 20000L), delays)
+    }
+
+    @Test
+    fun burstShouldEndWhenPushedPipelineIsFinal() {
+        assertFalse(PushPollingService.isFinished(pipeline("abc", "running"), 10_000))
+        assertTrue(PushPollingService.isFinished(pipeline("abc", "success"), 10_000))
+        assertTrue(PushPollingService.isFinished(pipeline("abc", "failed"), 10_000))
+    }
+
+    @Test
+    fun burstShouldEndIfNoPipelineAppearsWithinTwoMinutes() {
+        assertFalse(PushPollingService.isFinished(null, 119_000))
+        assertTrue(PushPollingService.isFinished(null, 121_000))
+        //The pipeline may take longer than two minutes once it's there
+        assertFalse(PushPollingService.isFinished(pipeline("abc", "running"), 121_000))
+    }
+
+    @Test
+    fun burstShouldEndAfterThirtyMinutes() {
+        assertFalse(PushPollingService.isFinished(pipeline("abc", "running"), 29 * 60_000L))
+        assertTrue(PushPollingService.isFinished(pipeline("abc", "running"), 31 * 60_000L))
+    }
+
+    @Test
+    fun pushedPipelineShouldBeFoundBySha() {
+        assertTrue(PushPollingService.isPushedPipeline(pipeline("abc", "running"), "abc", 0))
+        assertFalse(PushPollingService.isPushedPipeline(pipeline("def", "running"), "abc", 0))
+    }
+
+    @Test
+    fun pushedPipelineShouldBeFoundByCreationTimeWithoutSha() {
+        val started = 1_000_000_000L
+        assertTrue(PushPollingService.isPushedPipeline(pipeline("abc", "running", started - 30_000), null, started))
+        assertFalse(PushPollingService.isPushedPipeline(pipeline("abc", "running", started - 90_000), null, started))
+    }
+
+    private fun pipeline(sha: String, status: String, createdMillis: Long = 0): PipelineTo {
+        val pipeline = PipelineTo()
+        pipeline.sha = sha
+        pipeline.status = status
+        pipeline.createdAt = Instant.ofEpochMilli(createdMillis).atZone(ZoneOffset.UTC)
+        return pipeline
+    }
+}
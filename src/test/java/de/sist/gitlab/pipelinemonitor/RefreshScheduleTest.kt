@@ -0,0 +1,79 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import de.sist.gitlab.pipelinemonitor.config.Mapping
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp
+
+class RefreshScheduleTest : BasePlatformTestCase() {
+
+    private val config: PipelineViewerConfigApp
+        get() = PipelineViewerConfigApp.instance
+    private var refreshDelay = 0
+    private var isAutomaticRefreshTiers = false
+
+    override fun setUp() {
+        super.setUp()
+        refreshDelay = config.refreshDelay
+        isAutomaticRefreshTiers = config.isAutomaticRefreshTiers
+        config.refreshDelay = 30
+        config.isAutomaticRefreshTiers = true
+    }
+
+    override fun tearDown() {
+        try {
+            config.refreshDelay = refreshDelay
+            config.isAutomaticRefreshTiers = isAutomaticRefreshTiers
+        } finally {
+            super.tearDown()
+        }
+    }
+
+    fun testUnfinishedPipelinesAreHot() {
+        assertTrue(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.RUNNING, 0)), 0, NOW))
+        assertTrue(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.PENDING, 0)), 0, NOW))
+        assertTrue(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.CREATED, 0)), 0, NOW))
+        assertTrue(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.PREPARING, 0)), 0, NOW))
+        assertTrue(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.WAITING_FOR_RESOURCE, 0)), 0, NOW))
+        assertFalse(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.FAILED, 0)), 0, NOW))
+    }
+
+    fun testRecentlyUpdatedPipelinesAreHot() {
+        assertTrue(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.SUCCESS, NOW - MINUTE)), 0, NOW))
+        assertFalse(RefreshSchedule.isHot(listOf(pipeline(PipelineStatus.SUCCESS, NOW - 31 * MINUTE)), 0, NOW))
+    }
+
+    fun testRecentLocalChangesAreHot() {
+        assertTrue(RefreshSchedule.isHot(emptyList(), NOW - MINUTE, NOW))
+        assertFalse(RefreshSchedule.isHot(emptyList(), NOW - 31 * MINUTE, NOW))
+    }
+
+    fun testColdMappingsAreRefreshedLessOften() {
+        val mapping = Mapping.toMapping(SERIALIZED)
+
+        assertEquals(30, RefreshSchedule.computeRefreshDelaySeconds(mapping, listOf(pipeline(PipelineStatus.RUNNING, 0)), 0, NOW))
+        assertEquals(300, RefreshSchedule.computeRefreshDelaySeconds(mapping, listOf(pipeline(PipelineStatus.SUCCESS, 0)), 0, NOW))
+    }
+
+    fun testAllMappingsAreHotWithoutTiers() {
+        config.isAutomaticRefreshTiers = false
+
+        assertEquals(30, RefreshSchedule.computeRefreshDelaySeconds(Mapping.toMapping(SERIALIZED), emptyList(), 0, NOW))
+    }
+
+    fun testRefreshDelayOfMappingIsUsed() {
+        val mapping = Mapping.toMapping("$SERIALIZED;600")
+
+        assertEquals(600, RefreshSchedule.computeRefreshDelaySeconds(mapping, listOf(pipeline(PipelineStatus.RUNNING, 0)), 0, NOW))
+        assertEquals(600, RefreshSchedule.computeRefreshDelaySeconds(mapping, emptyList(), 0, NOW))
+    }
+
+    private fun pipeline(status: PipelineStatus, updateTime: Long): PipelineJobStatus {
+        return TestPipelines.pipeline(1).status(status).updated(updateTime).build()
+    }
+
+    companion object {
+        private const val SERIALIZED = "git@gitlab.com:foo/bar.git;https://gitlab.com;foo/bar;123;bar"
+        private const val MINUTE = 60 * 1000L
+        private const val NOW = 1000 * 60 * MINUTE
+    }
+}
@@ -0,0 +1,52 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.testFramework.PlatformTestUtil
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import de.sist.gitlab.pipelinemonitor.config.PipelineViewerConfigApp
+import de.sist.gitlab.pipelinemonitor.gitlab.GitlabService
+
+/**
+ * Refreshes many mappings of a local stand-in gitlab host which doesn't answer until it's released and checks that meanwhile no pooled
+ * (i.e. platform) thread waits for it.
+ */
+class RefreshThreadsTest : BasePlatformTestCase() {
+
+    fun testNoPooledThreadIsBlockedDuringRefreshOfManyMappings() {
+        //The progress bar must not wait on a thread either
+        assertTrue(PipelineViewerConfigApp.instance.isShowProgressBar)
+        StandInGitlab.start().use { gitlab ->
+            val backgroundUpdateService = project.getService(BackgroundUpdateService::class.java)
+            val gitlabService = project.getService(GitlabService::class.java)
+            val mappings = (1..50).map { gitlab.mapping(it) }
+            gitlab.holdRequests()
+
+            val update = backgroundUpdateService.updateMappings(mappings, true)
+            waitFor("Requests not sent") { gitlab.heldRequests > 0 }
+            //Sampled a few times because threads may only start waiting a bit later
+            repeat(10) {
+                assertEmpty(getBlockedPlatformThreads())
+                Thread.sleep(50)
+            }
+            assertFalse(update.isDone)
+
+            gitlab.releaseRequests()
+            waitFor("Pipelines not published") { mappings.all { gitlabService.getPipelineInfos()[it].orEmpty().isNotEmpty() } }
+            waitFor("Refresh not finished") { update.isDone }
+        }
+    }
+
+    /**
+     * Virtual threads aren't contained in [Thread.getAllStackTraces], so any thread found here blocks a platform thread while running
+     * code of the plugin.
+     */
+    private fun getBlockedPlatformThreads(): List<String> {
+        return Thread.getAllStackTraces()
+            .filter { (thread, _) -> thread != Thread.currentThread() && thread.state != Thread.State.RUNNABLE }
+            .filter { (_, stackTrace) -> stackTrace.any { it.className.startsWith("de.sist.gitlab.pipelinemonitor.") } }
+            .map { (thread, stackTrace) -> thread.name + ": " + stackTrace.first { it.className.startsWith("de.sist.gitlab.pipelinemonitor.") } }
+    }
+
+    private fun waitFor(message: String, condition: () -> Boolean) {
+        PlatformTestUtil.waitWithEventsDispatching(message, condition, 10)
+    }
+}
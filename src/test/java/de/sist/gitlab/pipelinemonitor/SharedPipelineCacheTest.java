@@ -0,0 +1,183 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SharedPipelineCacheTest {
+
+    private File folder;
+    private SharedPipelineCache.SharedFile leader;
+    private SharedPipelineCache.SharedFile follower;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("sharedCache").toFile();
+        //A second channel of the same process can't get the lock either, just like another process
+        leader = new SharedPipelineCache.SharedFile(new File(folder, "test.lock"), new File(folder, "test.cache"));
+        follower = new SharedPipelineCache.SharedFile(new File(folder, "test.lock"), new File(folder, "test.cache"));
+    }
+
+    @After
+    public void tearDown() {
+        leader.close();
+        follower.close();
+        final File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        folder.delete();
+    }
+
+    @Test
+    public void onlyOneShouldLead() throws IOException {
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+        assertTrue(leader.isLeader());
+    }
+
+    @Test
+    public void followerShouldReadWhatLeaderWrote() throws IOException {
+        assertTrue(leader.isLeader());
+        assertNull(follower.read(60_000, SharedPipelineCache.PIPELINES));
+
+        leader.write(List.of(pipeline(1, "main"), pipeline(2, "feature")));
+        final List<PipelineTo> read = follower.read(60_000, SharedPipelineCache.PIPELINES);
+
+        assertNotNull(read);
+        assertEquals(2, read.size());
+        assertEquals(Long.valueOf(1), read.get(0).getId());
+        assertEquals("feature", read.get(1).getRef());
+        assertEquals("success", read.get(1).getStatus());
+    }
+
+    @Test
+    public void followerShouldReadLatestWrite() throws IOException {
+        assertTrue(leader.isLeader());
+
+        leader.write(List.of(pipeline(1, "main")));
+        leader.write(List.of(pipeline(3, "develop")));
+
+        assertEquals("develop", follower.read(60_000, SharedPipelineCache.PIPELINES).get(0).getRef());
+    }
+
+    @Test
+    public void followerShouldIgnoreOutdatedData() throws IOException, InterruptedException {
+        assertTrue(leader.isLeader());
+        leader.write(List.of(pipeline(1, "main")));
+
+        Thread.sleep(20);
+
+        assertNull(follower.read(10, SharedPipelineCache.PIPELINES));
+    }
+
+    @Test
+    public void closedFileShouldNotLead() throws IOException {
+        assertTrue(leader.isLeader());
+
+        leader.close();
+
+        assertFalse(leader.isLeader());
+        assertTrue(follower.isLeader());
+    }
+
+    @Test
+    public void fileShouldBeUnusedAfterMaxAge() {
+        final long nowMillis = System.currentTimeMillis();
+        leader.used(60_000);
+
+        assertFalse(leader.isUnused(nowMillis + 1000));
+        assertTrue(leader.isUnused(nowMillis + 61_000));
+    }
+
+    @Test(timeout = 60_000)
+    public void followerShouldReadWhatOtherProcessWrote() throws Exception {
+        final Process otherProcess = startOtherProcess();
+        try (BufferedReader output = otherProcess.inputReader(StandardCharsets.UTF_8);
+             Writer input = otherProcess.outputWriter(StandardCharsets.UTF_8)) {
+            assertEquals("leading", output.readLine());
+            assertFalse(follower.isLeader());
+            assertEquals("other", follower.read(60_000, SharedPipelineCache.PIPELINES).get(0).getRef());
+
+            //E.g. the project was closed in the other IDE
+            input.write("release\n");
+            input.flush();
+            assertEquals("released", output.readLine());
+            assertTrue(follower.isLeader());
+        } finally {
+            otherProcess.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void lockShouldBeReleasedWhenOtherProcessExits() throws Exception {
+        final Process otherProcess = startOtherProcess();
+        try (BufferedReader output = otherProcess.inputReader(StandardCharsets.UTF_8)) {
+            assertEquals("leading", output.readLine());
+            assertFalse(follower.isLeader());
+        }
+
+        //The lock file is not cleaned up, the OS releases the lock
+        otherProcess.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+
+        assertTrue(follower.isLeader());
+    }
+
+    private Process startOtherProcess() throws IOException {
+        final String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), OtherProcess.class.getName(), folder.getAbsolutePath())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * Another IDE process on the same machine. Leads the test file and writes a pipeline, then releases the lead when told so.
+     */
+    public static class OtherProcess {
+
+        public static void main(String[] args) throws IOException {
+            final File folder = new File(args[0]);
+            final SharedPipelineCache.SharedFile file = new SharedPipelineCache.SharedFile(new File(folder, "test.lock"), new File(folder, "test.cache"));
+            if (!file.isLeader()) {
+                System.out.println("following");
+                System.out.flush();
+                return;
+            }
+            file.write(List.of(pipeline(5, "other")));
+            System.out.println("leading");
+            System.out.flush();
+            final BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            if ("release".equals(input.readLine())) {
+                file.close();
+                System.out.println("released");
+                System.out.flush();
+            }
+            //Waits until the test is done
+            input.readLine();
+        }
+    }
+
+    private static PipelineTo pipeline(long id, String ref) {
+        final PipelineTo pipeline = new PipelineTo();
+        pipeline.setId(id);
+        pipeline.setRef(ref);
+        pipeline.setStatus("success");
+        pipeline.setCreatedAt(ZonedDateTime.parse("2024-03-01T10:15:30Z"));
+        pipeline.setUpdatedAt(ZonedDateTime.parse("2024-03-01T10:20:30Z"));
+        return pipeline;
+    }
+}
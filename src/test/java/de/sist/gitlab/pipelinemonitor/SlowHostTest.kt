@@ -0,0 +1,43 @@
+package de.sist.gitlab.pipelinemonitor
+
+import com.intellij.testFramework.PlatformTestUtil
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import de.sist.gitlab.pipelinemonitor.gitlab.GitlabService
+
+/**
+ * Refreshes the pipelines of two local stand-in gitlab hosts, one of which doesn't answer until it's released.
+ */
+class SlowHostTest : BasePlatformTestCase() {
+
+    fun testSlowHostDoesntDelayOtherHost() {
+        StandInGitlab.start().use { fast ->
+            StandInGitlab.start().use { slow ->
+                val backgroundUpdateService = project.getService(BackgroundUpdateService::class.java)
+                val gitlabService = project.getService(GitlabService::class.java)
+                val fastMapping = fast.mapping(1)
+                val slowMapping = slow.mapping(2)
+                val mappings = listOf(fastMapping, slowMapping)
+                slow.holdRequests()
+
+                val firstUpdate = backgroundUpdateService.updateMappings(mappings, true)
+                waitFor("Pipelines of the fast host not published") { gitlabService.getPipelineInfos()[fastMapping].orEmpty().isNotEmpty() }
+                waitFor("Request to the slow host not sent") { slow.heldRequests == 1 }
+
+                //The next refresh of the fast host doesn't wait for the slow one either
+                val requestsOfFirstUpdate = fast.pipelineRequests
+                val secondUpdate = backgroundUpdateService.updateMappings(mappings, true)
+                waitFor("Fast host not refreshed again") { fast.pipelineRequests > requestsOfFirstUpdate }
+                assertFalse(firstUpdate.isDone)
+                assertFalse(gitlabService.getPipelineInfos().containsKey(slowMapping))
+
+                slow.releaseRequests()
+                waitFor("Pipelines of the slow host not published") { gitlabService.getPipelineInfos()[slowMapping].orEmpty().isNotEmpty() }
+                waitFor("Refreshes not finished") { firstUpdate.isDone && secondUpdate.isDone }
+            }
+        }
+    }
+
+    private fun waitFor(message: String, condition: () -> Boolean) {
+        PlatformTestUtil.waitWithEventsDispatching(message, condition, 10)
+    }
+}
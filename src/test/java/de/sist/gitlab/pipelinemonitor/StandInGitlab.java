@@ -0,0 +1,130 @@
+package de.sist.gitlab.pipelinemonitor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for a gitlab instance which returns one successful pipeline for every project and no merge requests. The pipeline requests
+ * can be held back to simulate a slow host.
+ */
+public final class StandInGitlab implements AutoCloseable {
+
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final Pattern PIPELINES_PATH = Pattern.compile("/api/v4/projects/(\\d+)/pipelines");
+    private static final String GRAPHQL_RESPONSE = """
+            {"data": {"project": {"id": "gid://gitlab/Project/1", "name": "project", "jobsEnabled": true,
+            "mergeRequests": {"edges": []}, "pipelines": {"nodes": []}}}}""";
+
+    private final HttpServer server;
+    private final AtomicInteger pipelineRequests = new AtomicInteger();
+    private final AtomicInteger heldRequests = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private StandInGitlab() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(LOOPBACK, 0), 0);
+        //Held requests must not block the others
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v4/projects/", this::handlePipelines);
+        server.createContext("/api/graphql", exchange -> respond(exchange, 200, GRAPHQL_RESPONSE));
+    }
+
+    public static StandInGitlab start() throws IOException {
+        final StandInGitlab gitlab = new StandInGitlab();
+        gitlab.server.start();
+        return gitlab;
+    }
+
+    public String getHost() {
+        return "http://" + LOOPBACK + ":" + server.getAddress().getPort();
+    }
+
+    public Mapping mapping(int projectId) {
+        final String projectPath = "foo/project" + projectId;
+        return Mapping.toMapping(getHost() + "/" + projectPath + ".git;" + getHost() + ";" + projectPath + ";" + projectId + ";project" + projectId);
+    }
+
+    /**
+     * Pipeline requests wait until {@link #releaseRequests()} is called.
+     */
+    public void holdRequests() {
+        release = new CountDownLatch(1);
+    }
+
+    public void releaseRequests() {
+        release.countDown();
+    }
+
+    /**
+     * @return the number of pipeline requests which were answered
+     */
+    public int getPipelineRequests() {
+        return pipelineRequests.get();
+    }
+
+    /**
+     * @return the number of pipeline requests currently held back
+     */
+    public int getHeldRequests() {
+        return heldRequests.get();
+    }
+
+    private void handlePipelines(HttpExchange exchange) throws IOException {
+        final Matcher matcher = PIPELINES_PATH.matcher(exchange.getRequestURI().getPath());
+        if (!matcher.matches()) {
+            respond(exchange, 404, "{}");
+            return;
+        }
+        heldRequests.incrementAndGet();
+        try {
+            if (!release.await(30, TimeUnit.SECONDS)) {
+                respond(exchange, 503, "{}");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            heldRequests.decrementAndGet();
+        }
+        pipelineRequests.incrementAndGet();
+        final String query = exchange.getRequestURI().getQuery();
+        if (query != null && Arrays.stream(query.split("&")).anyMatch(x -> x.startsWith("page=") && !x.equals("page=1"))) {
+            //Everything is on the first page
+            respond(exchange, 200, "[]");
+            return;
+        }
+        final long projectId = Long.parseLong(matcher.group(1));
+        respond(exchange, 200, String.format("""
+                [{"id": %d, "project_id": %d, "status": "success", "ref": "main", "sha": "a91957a858320c0e17f3a0eca7cfacbff50ea29a",
+                "web_url": "%s/pipelines/%d", "created_at": "2024-01-02T10:00:00Z", "updated_at": "2024-01-02T10:05:00Z"}]""",
+                projectId * 1000, projectId, getHost(), projectId * 1000));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        releaseRequests();
+        server.stop(0);
+    }
+}
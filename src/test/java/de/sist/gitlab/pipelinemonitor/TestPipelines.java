@@ -0,0 +1,58 @@
+package de.sist.gitlab.pipelinemonitor;
+
+/**
+ * Creates pipelines for tests. Everything not set explicitly gets a fixed default.
+ */
+public final class TestPipelines {
+
+    public static final String LINK_BASE = "https://gitlab.com/foo/bar/-/pipelines/";
+
+    private TestPipelines() {
+    }
+
+    public static Builder pipeline(long id) {
+        return new Builder(id);
+    }
+
+    public static class Builder {
+        private final long id;
+        private String branch = "main";
+        private String projectId = "1";
+        private long creationTime = 100;
+        private long updateTime = 100;
+        private PipelineStatus status = PipelineStatus.SUCCESS;
+
+        private Builder(long id) {
+            this.id = id;
+        }
+
+        public Builder branch(String branch) {
+            this.branch = branch;
+            return this;
+        }
+
+        public Builder projectId(String projectId) {
+            this.projectId = projectId;
+            return this;
+        }
+
+        public Builder created(long creationTime) {
+            this.creationTime = creationTime;
+            return this;
+        }
+
+        public Builder updated(long updateTime) {
+            this.updateTime = updateTime;
+            return this;
+        }
+
+        public Builder status(PipelineStatus status) {
+            this.status = status;
+            return this;
+        }
+
+        public PipelineJobStatus build() {
+            return new PipelineJobStatus(id, branch, projectId, creationTime, updateTime, status, LINK_BASE, null);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package de.sist.gitlab.pipelinemonitor.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MappingTest {
+
+    private static final String SERIALIZED = "git@gitlab.com:foo/bar.git;https://gitlab.com;foo/bar;123;bar";
+
+    @Test
+    public void shouldParseMappingWithoutRefreshDelay() {
+        final Mapping mapping = Mapping.toMapping(SERIALIZED);
+
+        assertEquals("git@gitlab.com:foo/bar.git", mapping.getRemote());
+        assertEquals("https://gitlab.com", mapping.getHost());
+        assertEquals("foo/bar", mapping.getProjectPath());
+        assertEquals("123", mapping.getGitlabProjectId());
+        assertEquals("bar", mapping.getProjectName());
+        assertNull(mapping.getRefreshDelay());
+        assertEquals(SERIALIZED, mapping.toSerializable());
+    }
+
+    @Test
+    public void shouldParseMappingWithRefreshDelay() {
+        final Mapping mapping = Mapping.toMapping(SERIALIZED + ";600");
+
+        assertEquals(Integer.valueOf(600), mapping.getRefreshDelay());
+        assertEquals(SERIALIZED + ";600", mapping.toSerializable());
+        assertNotEquals(Mapping.toMapping(SERIALIZED), mapping);
+    }
+
+    @Test
+    public void shouldIgnoreInvalidRefreshDelay() {
+        assertNull(Mapping.toMapping(SERIALIZED + ";soon").getRefreshDelay());
+        assertNull(Mapping.toMapping(SERIALIZED + ";0").getRefreshDelay());
+        assertNull(Mapping.toMapping(SERIALIZED + ";-5").getRefreshDelay());
+    }
+
+    @Test
+    public void shouldValidateRefreshDelay() {
+        assertTrue(Mapping.isValid(SERIALIZED));
+        assertTrue(Mapping.isValid(SERIALIZED + ";600"));
+        assertTrue(Mapping.isValid(SERIALIZED + "; 600"));
+        assertFalse(Mapping.isValid(SERIALIZED + ";0"));
+        assertFalse(Mapping.isValid(SERIALIZED + ";-5"));
+        assertFalse(Mapping.isValid(SERIALIZED + ";soon"));
+        assertFalse(Mapping.isValid(SERIALIZED + ";600;1"));
+        assertFalse(Mapping.isValid("git@gitlab.com:foo/bar.git;https://gitlab.com;foo/bar;123"));
+        assertFalse(Mapping.isValid(null));
+    }
+}
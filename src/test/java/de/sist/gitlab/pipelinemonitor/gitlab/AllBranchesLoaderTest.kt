@@ -0,0 +1,51 @@
+package de.sist.gitlab.pipelinemonitor.gitlab
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import de.sist.gitlab.pipelinemonitor.Jackson
+import de.sist.gitlab.pipelinemonitor.PipelineStatus
+import de.sist.gitlab.pipelinemonitor.TestPipelines
+import de.sist.gitlab.pipelinemonitor.config.Mapping
+
+class AllBranchesLoaderTest : BasePlatformTestCase() {
+
+    fun testTotalAssumesAnotherPageWhileFull() {
+        assertEquals(40, AllBranchesLoader.estimateTotal(1, 20, 20))
+        assertEquals(60, AllBranchesLoader.estimateTotal(2, 20, 20))
+    }
+
+    fun testTotalIsExactOnLastPage() {
+        assertEquals(25, AllBranchesLoader.estimateTotal(2, 20, 5))
+        assertEquals(20, AllBranchesLoader.estimateTotal(2, 20, 0))
+    }
+
+    fun testToPipeline() {
+        val node = Jackson.OBJECT_MAPPER.readTree(
+            """{"id": "gid://gitlab/Ci::Pipeline/123", "status": "RUNNING", "createdAt": "2024-01-02T10:00:00Z", "updatedAt": "2024-01-02T10:05:00Z"}"""
+        )
+
+        val pipeline = AllBranchesLoader.toPipeline(node, "main", mapping(), TestPipelines.LINK_BASE)
+
+        assertEquals(123L, pipeline.id)
+        assertEquals("main", pipeline.branchName)
+        assertEquals("1", pipeline.projectId)
+        assertEquals(PipelineStatus.RUNNING, pipeline.status)
+        assertEquals(1704189600000L, pipeline.creationTime)
+        assertEquals(1704189900000L, pipeline.updateTime)
+    }
+
+    fun testToPipelineWithoutTimes() {
+        val node = Jackson.OBJECT_MAPPER.readTree("""{"id": "gid://gitlab/Ci::Pipeline/7", "status": "SUCCESS"}""")
+
+        val pipeline = AllBranchesLoader.toPipeline(node, "main", mapping(), TestPipelines.LINK_BASE)
+
+        assertEquals(7L, pipeline.id)
+        assertEquals(PipelineStatus.SUCCESS, pipeline.status)
+        assertEquals(0L, pipeline.creationTime)
+    }
+
+    private fun mapping(): Mapping {
+        val mapping = Mapping()
+        mapping.gitlabProjectId = "1"
+        return mapping
+    }
+}
@@ -0,0 +1,62 @@
+package de.sist.gitlab.pipelinemonitor.gitlab
+
+import com.google.common.collect.Interners
+import de.sist.gitlab.pipelinemonitor.PipelineTo
+import de.sist.gitlab.pipelinemonitor.config.Mapping
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.lang.ref.Reference
+import java.time.ZonedDateTime
+
+/**
+ * Measures the heap retained by the pipelines of 100 mappings with 200 pipelines each, as kept in a snapshot.
+ */
+class JobStatusHeapTest {
+
+    @Test
+    fun pipelinesOfManyMappingsStayCompact() {
+        val mappingsToPipelines = (1..MAPPINGS).associate { projectId ->
+            Mapping.toMapping("git@gitlab.com:foo/project$projectId.git;https://gitlab.com;foo/project$projectId;$projectId;project$projectId") to
+                    (1..PIPELINES_PER_MAPPING).map { pipelineTo(projectId * 1000L + it, it) }
+        }
+
+        val usedBefore = getUsedHeapAfterGc()
+        val jobStatuses = mappingsToPipelines.map { (mapping, pipelines) -> GitlabService.toJobStatuses(mapping, pipelines, Interners.newWeakInterner()) }
+        val usedAfter = getUsedHeapAfterGc()
+
+        val bytesPerPipeline = (usedAfter - usedBefore) / (MAPPINGS * PIPELINES_PER_MAPPING)
+        //A pipeline is one object with three longs and eight references. Refs, sources and the link base are shared
+        assertTrue("$bytesPerPipeline bytes retained per pipeline", bytesPerPipeline < MAX_BYTES_PER_PIPELINE)
+        Reference.reachabilityFence(jobStatuses)
+        Reference.reachabilityFence(mappingsToPipelines)
+    }
+
+    private fun pipelineTo(id: Long, index: Int): PipelineTo {
+        val pipeline = PipelineTo()
+        pipeline.id = id
+        //New string instances like those parsed from a response, most pipelines run for a few branches
+        pipeline.ref = String(("feature-" + index % 20).toCharArray())
+        pipeline.source = String("push".toCharArray())
+        pipeline.status = "success"
+        pipeline.createdAt = ZonedDateTime.parse("2024-03-01T10:15:30Z").plusMinutes(index.toLong())
+        pipeline.updatedAt = pipeline.createdAt.plusMinutes(5)
+        return pipeline
+    }
+
+    private fun getUsedHeapAfterGc(): Long {
+        val runtime = Runtime.getRuntime()
+        var used = Long.MAX_VALUE
+        //The smallest value of a few collections, other threads may allocate meanwhile
+        repeat(3) {
+            System.gc()
+            used = minOf(used, runtime.totalMemory() - runtime.freeMemory())
+        }
+        return used
+    }
+
+    companion object {
+        private const val MAPPINGS = 100
+        private const val PIPELINES_PER_MAPPING = 200
+        private const val MAX_BYTES_PER_PIPELINE = 200
+    }
+}
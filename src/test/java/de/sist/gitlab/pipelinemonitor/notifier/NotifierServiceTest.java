@@ -0,0 +1,40 @@
+package de.sist.gitlab.pipelinemonitor.notifier;
+
+import de.sist.gitlab.pipelinemonitor.PipelineJobStatus;
+import de.sist.gitlab.pipelinemonitor.TestPipelines;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class NotifierServiceTest {
+
+    @Test
+    public void shouldShowNewestThree() {
+        final List<PipelineJobStatus> statuses = List.of(pipeline(4, 400), pipeline(3, 300), pipeline(2, 200), pipeline(1, 100));
+
+        assertEquals(List.of(4L, 3L, 2L), ids(NotifierService.getNewestStatuses(statuses)));
+    }
+
+    @Test
+    public void shouldShowNewestThreeOfSeveralMappings() {
+        final List<PipelineJobStatus> statuses = List.of(pipeline(2, 200), pipeline(1, 100), pipeline(5, 500), pipeline(4, 400), pipeline(3, 300));
+
+        assertEquals(List.of(5L, 4L, 3L), ids(NotifierService.getNewestStatuses(statuses)));
+    }
+
+    @Test
+    public void shouldShowAllIfLessThanThree() {
+        assertEquals(List.of(2L, 1L), ids(NotifierService.getNewestStatuses(List.of(pipeline(1, 100), pipeline(2, 200)))));
+        assertEquals(List.of(), ids(NotifierService.getNewestStatuses(List.of())));
+    }
+
+    private static List<Long> ids(List<PipelineJobStatus> statuses) {
+        return statuses.stream().map(PipelineJobStatus::getId).toList();
+    }
+
+    private static PipelineJobStatus pipeline(long id, long creationTime) {
+        return TestPipelines.pipeline(id).created(creationTime).build();
+    }
+}
@@ -0,0 +1,106 @@
+package de.sist.gitlab.pipelinemonitor.ui;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import de.sist.gitlab.pipelinemonitor.TestPipelines;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+import de.sist.gitlab.pipelinemonitor.gitlab.AllBranchesLoader;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static de.sist.gitlab.pipelinemonitor.ui.AllBranchesTableModel.MAX_CACHED_PAGES;
+import static de.sist.gitlab.pipelinemonitor.ui.AllBranchesTableModel.PAGE_SIZE;
+
+public class AllBranchesTableModelTest extends BasePlatformTestCase {
+
+    private static final int TOTAL = PAGE_SIZE * (MAX_CACHED_PAGES + 5);
+
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private AllBranchesTableModel model;
+    private Mapping mapping;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mapping = Mapping.toMapping("git@gitlab.com:foo/bar.git;https://gitlab.com;foo/bar;1;bar");
+        model = new AllBranchesTableModel((mapping, search, page, perPage) -> {
+            requests.add(new Request(search, page, perPage));
+            final int firstRow = (page - 1) * perPage;
+            final List<AllBranchesLoader.BranchPipeline> branches = IntStream.range(firstRow, Math.min(TOTAL, firstRow + perPage))
+                    .mapToObj(row -> new AllBranchesLoader.BranchPipeline(search + row, TestPipelines.pipeline(row).build()))
+                    .toList();
+            return new AllBranchesLoader.Page(branches, TOTAL);
+        });
+    }
+
+    public void testFirstPageIsLoadedOnReset() {
+        model.reset(mapping, "feature");
+        waitForRequests(1);
+
+        assertEquals(new Request("feature", 1, PAGE_SIZE), requests.get(0));
+        assertEquals(TOTAL, model.getRowCount());
+        assertEquals("feature0", model.getValueAt(0, 0));
+        assertEquals(TestPipelines.LINK_BASE + "0", model.getValueAt(0, AllBranchesTableModel.PIPELINE_COLUMN));
+    }
+
+    public void testPagesAreLoadedWhenShown() {
+        model.reset(mapping, "");
+        waitForRequests(1);
+
+        assertEquals("Loading...", model.getValueAt(PAGE_SIZE * 3 + 1, 0));
+        //Requested only once while loading
+        model.getValueAt(PAGE_SIZE * 3 + 2, 0);
+        waitForRequests(2);
+
+        assertEquals(4, requests.get(1).page());
+        assertEquals(String.valueOf(PAGE_SIZE * 3 + 1), model.getValueAt(PAGE_SIZE * 3 + 1, 0));
+        assertEquals(2, requests.size());
+    }
+
+    public void testLeastRecentlyUsedPagesAreEvicted() {
+        model.reset(mapping, "");
+        waitForRequests(1);
+        for (int page = 1; page < MAX_CACHED_PAGES; page++) {
+            model.getValueAt(page * PAGE_SIZE, 0);
+            waitForRequests(page + 1);
+        }
+        //Page 1 is used again, so page 2 is now the least recently used one
+        assertEquals("0", model.getValueAt(0, 0));
+
+        model.getValueAt(MAX_CACHED_PAGES * PAGE_SIZE, 0);
+        waitForRequests(MAX_CACHED_PAGES + 1);
+
+        assertEquals("0", model.getValueAt(0, 0));
+        assertEquals("Loading...", model.getValueAt(PAGE_SIZE, 0));
+        waitForRequests(MAX_CACHED_PAGES + 2);
+        assertEquals(2, requests.get(requests.size() - 1).page());
+    }
+
+    public void testNewSearchDiscardsLoadedPages() {
+        model.reset(mapping, "feature");
+        waitForRequests(1);
+
+        model.reset(mapping, "bugfix");
+        assertEquals(0, model.getRowCount());
+        waitForRequests(2);
+
+        assertEquals(new Request("bugfix", 1, PAGE_SIZE), requests.get(1));
+        assertEquals("bugfix0", model.getValueAt(0, 0));
+    }
+
+    private void waitForRequests(int count) {
+        //Each page is applied on the EDT after it was loaded
+        PlatformTestUtil.waitWithEventsDispatching("Pages not loaded", () -> requests.size() >= count && !isLoading(), 10);
+        assertEquals(count, requests.size());
+    }
+
+    private boolean isLoading() {
+        final int lastRequestedPage = requests.get(requests.size() - 1).page();
+        return model.getRowCount() == 0 || !model.isLoaded(lastRequestedPage - 1);
+    }
+
+    private record Request(String search, int page, int perPage) {
+    }
+}
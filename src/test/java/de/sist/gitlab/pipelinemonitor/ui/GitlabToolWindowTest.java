@@ -0,0 +1,151 @@
+package de.sist.gitlab.pipelinemonitor.ui;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import de.sist.gitlab.pipelinemonitor.PipelineJobStatus;
+import de.sist.gitlab.pipelinemonitor.PipelineStatus;
+import de.sist.gitlab.pipelinemonitor.PipelinesDelta;
+import de.sist.gitlab.pipelinemonitor.TestPipelines;
+import de.sist.gitlab.pipelinemonitor.config.Mapping;
+import de.sist.gitlab.pipelinemonitor.metrics.Histogram;
+import de.sist.gitlab.pipelinemonitor.metrics.PluginMetrics;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class GitlabToolWindowTest extends BasePlatformTestCase {
+
+    private static final Mapping MAPPING = Mapping.toMapping("git@gitlab.com:foo/bar.git;https://gitlab.com;foo/bar;1;bar");
+    private static final int MAPPINGS = 100;
+    private static final int PIPELINES_PER_MAPPING = 20;
+    //Applying the rows may cost a frame now and then but must never freeze the UI noticeably
+    private static final long EDT_BUDGET_MILLIS = 50;
+    private static final int RENDERED_ROWS = 1000;
+    //Rows painted at once, like a tall tool window
+    private static final int ROWS_PER_PAINT = 50;
+    private static final long RENDER_BUDGET_MILLIS = 100;
+
+    public void testProjectColumnHiddenForSingleProject() {
+        assertFalse(GitlabToolWindow.isShowProjectColumn(List.of(pipeline(1, "1"), pipeline(2, "1")), true));
+    }
+
+    public void testProjectColumnShownForMultipleProjects() {
+        assertTrue(GitlabToolWindow.isShowProjectColumn(List.of(pipeline(1, "1"), pipeline(2, "2")), true));
+        assertTrue(GitlabToolWindow.isShowProjectColumn(List.of(), true));
+    }
+
+    public void testProjectColumnHiddenWhenOnlyCurrentProjectIsShown() {
+        assertFalse(GitlabToolWindow.isShowProjectColumn(List.of(pipeline(1, "1"), pipeline(2, "2")), false));
+    }
+
+    public void testChangedStatusIsApplicableToRows() {
+        final PipelinesDelta delta = delta(List.of(running(1)), List.of(TestPipelines.pipeline(1).status(PipelineStatus.PENDING).updated(200).build()));
+
+        assertTrue(GitlabToolWindow.isApplicableToRows(delta));
+        assertTrue(GitlabToolWindow.isApplicableToRows(PipelinesDelta.EMPTY));
+    }
+
+    public void testFinishedPipelineIsNotApplicableToRows() {
+        //Older pipelines of the branch may not be shown anymore
+        final PipelinesDelta delta = delta(List.of(running(1)), List.of(TestPipelines.pipeline(1).status(PipelineStatus.FAILED).updated(200).build()));
+
+        assertFalse(GitlabToolWindow.isApplicableToRows(delta));
+    }
+
+    public void testAddedOrRemovedPipelinesAreNotApplicableToRows() {
+        assertFalse(GitlabToolWindow.isApplicableToRows(delta(List.of(running(1)), List.of(running(1), running(2)))));
+        assertFalse(GitlabToolWindow.isApplicableToRows(delta(List.of(running(1), running(2)), List.of(running(1)))));
+    }
+
+    public void testPipelineOfNewMergeRequestIsNotApplicableToRows() {
+        final PipelineJobStatus withMergeRequest = TestPipelines.pipeline(1).status(PipelineStatus.RUNNING).build()
+                .withMergeRequestInfo("https://gitlab.com/foo/bar/-/merge_requests/1", "Title", null);
+
+        assertFalse(GitlabToolWindow.isApplicableToRows(delta(List.of(running(1)), List.of(withMergeRequest))));
+    }
+
+    public void testApplyingRowsOfManyMappingsStaysWithinEdtBudget() {
+        final GitlabToolWindow toolWindow = new GitlabToolWindow(getProject());
+        final Histogram histogram = PluginMetrics.histogram("edt.table.rebuild");
+        final long countBefore = histogram.getCount();
+
+        for (int round = 0; round < 20; round++) {
+            toolWindow.applyRowModel(new GitlabToolWindow.RowModel(rows(round), true));
+        }
+
+        assertEquals(countBefore + 20, histogram.getCount());
+        assertTrue(histogram.toString(), histogram.getPercentileMillis(95) <= EDT_BUDGET_MILLIS);
+    }
+
+    /**
+     * Paints all cells of 1,000 rows the way the table is painted when scrolling through it. Measured after a warm up so that only the
+     * steady state of the renderers counts.
+     */
+    public void testRenderingThousandRowsStaysWithinBudget() {
+        final GitlabToolWindow toolWindow = new GitlabToolWindow(getProject());
+        toolWindow.applyRowModel(new GitlabToolWindow.RowModel(rows(0).subList(0, RENDERED_ROWS), true));
+        final JTable table = toolWindow.getPipelineTable();
+        final int width = table.getPreferredSize().width;
+        final int pageHeight = table.getRowHeight() * ROWS_PER_PAINT;
+        table.setSize(width, table.getRowHeight() * RENDERED_ROWS);
+        final BufferedImage image = new BufferedImage(width, pageHeight, BufferedImage.TYPE_INT_ARGB);
+        final Histogram histogram = new Histogram();
+
+        for (int run = 0; run < 30; run++) {
+            final long start = System.nanoTime();
+            for (int firstRow = 0; firstRow < RENDERED_ROWS; firstRow += ROWS_PER_PAINT) {
+                final Graphics2D graphics = image.createGraphics();
+                try {
+                    graphics.translate(0, -firstRow * table.getRowHeight());
+                    graphics.setClip(0, firstRow * table.getRowHeight(), width, pageHeight);
+                    table.paint(graphics);
+                } finally {
+                    graphics.dispose();
+                }
+            }
+            if (run >= 10) {
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        assertEquals(RENDERED_ROWS, table.getRowCount());
+        assertTrue(histogram.toString(), histogram.getPercentileMillis(50) <= RENDER_BUDGET_MILLIS);
+    }
+
+    /**
+     * @return the rows of all mappings where each round another tenth of the pipelines changed its status
+     */
+    private List<PipelineRow> rows(int round) {
+        final List<PipelineRow> rows = new ArrayList<>();
+        for (int mapping = 0; mapping < MAPPINGS; mapping++) {
+            for (int i = 0; i < PIPELINES_PER_MAPPING; i++) {
+                final long id = (long) mapping * PIPELINES_PER_MAPPING + i;
+                final boolean changed = (i + round) % 10 == 0;
+                final PipelineJobStatus pipeline = TestPipelines.pipeline(id)
+                        .projectId(String.valueOf(mapping))
+                        .branch("branch" + i)
+                        .created(id)
+                        .updated(changed ? 1000 + round : 100)
+                        .status(changed && round % 2 == 1 ? PipelineStatus.SUCCESS : PipelineStatus.RUNNING)
+                        .build();
+                rows.add(new PipelineRow(pipeline, getProject()));
+            }
+        }
+        return rows;
+    }
+
+    private static PipelinesDelta delta(List<PipelineJobStatus> before, List<PipelineJobStatus> after) {
+        return PipelinesDelta.compute(Map.of(MAPPING, before), Map.of(MAPPING, after));
+    }
+
+    private static PipelineJobStatus running(long id) {
+        return TestPipelines.pipeline(id).status(PipelineStatus.RUNNING).build();
+    }
+
+    private static PipelineJobStatus pipeline(long id, String projectId) {
+        return TestPipelines.pipeline(id).projectId(projectId).build();
+    }
+}
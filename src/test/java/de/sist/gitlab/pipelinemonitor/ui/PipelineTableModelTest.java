@@ -0,0 +1,114 @@
+package de.sist.gitlab.pipelinemonitor.ui;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import de.sist.gitlab.pipelinemonitor.PipelineJobStatus;
+import de.sist.gitlab.pipelinemonitor.PipelineStatus;
+import de.sist.gitlab.pipelinemonitor.TestPipelines;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PipelineTableModelTest extends BasePlatformTestCase {
+
+    private PipelineTableModel model;
+    private List<TableModelEvent> events;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        model = new PipelineTableModel();
+        events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+    }
+
+    public void testFirstLoadIsSortedAndDeduplicated() {
+        model.setRows(List.of(row(1, "main", 100), row(2, "develop", 200), row(1, "main", 100)));
+
+        assertEquals(List.of(2L, 1L), ids());
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+    }
+
+    public void testDuplicateIdsInLaterLoadDontFail() {
+        model.setRows(List.of(row(1, "main", 100), row(2, "main", 200)));
+        events.clear();
+
+        model.setRows(List.of(row(1, "main", 100), row(1, "main", 100), row(2, "main", 200), row(3, "main", 300)));
+
+        assertEquals(List.of(3L, 2L, 1L), ids());
+    }
+
+    public void testOnlyChangedRowsAreUpdated() {
+        model.setRows(List.of(row(1, "main", 100), row(2, "main", 200)));
+        events.clear();
+
+        model.setRows(List.of(row(1, "main", 100), row(2, "main", 200, PipelineStatus.SUCCESS)));
+
+        assertEquals(List.of(2L, 1L), ids());
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(0, events.get(0).getFirstRow());
+    }
+
+    public void testRemovedAndAddedRows() {
+        model.setRows(List.of(row(1, "main", 100), row(2, "main", 200)));
+        events.clear();
+
+        model.setRows(List.of(row(2, "main", 200), row(3, "develop", 300)));
+
+        assertEquals(List.of(3L, 2L), ids());
+        assertEquals(TableModelEvent.DELETE, events.get(0).getType());
+        assertEquals(TableModelEvent.INSERT, events.get(1).getType());
+    }
+
+    public void testMovedRow() {
+        model.setRows(List.of(row(1, "a", 100), row(2, "b", 200)));
+        events.clear();
+
+        final PipelineJobStatus renamed = pipeline(1, "a", 100, PipelineStatus.RUNNING).withMergeRequestInfo(null, "c", null);
+        model.setRows(List.of(new PipelineRow(renamed, getProject()), row(2, "b", 200)));
+
+        assertEquals(List.of(2L, 1L), ids());
+    }
+
+    public void testUpdatedRowsAreReplacedInPlace() {
+        model.setRows(List.of(row(1, "main", 100), row(2, "main", 200)));
+        events.clear();
+
+        model.updateRows(List.of(row(1, "main", 100, PipelineStatus.SUCCESS), row(3, "main", 300)));
+
+        assertEquals(List.of(2L, 1L), ids());
+        assertEquals(PipelineStatus.SUCCESS, model.rows.get(1).getPipeline().getStatus());
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(1, events.get(0).getFirstRow());
+    }
+
+    public void testOutdatedUpdatesAreIgnored() {
+        final PipelineJobStatus newer = TestPipelines.pipeline(1).created(100).updated(200).status(PipelineStatus.SUCCESS).build();
+        model.setRows(List.of(new PipelineRow(newer, getProject())));
+        events.clear();
+
+        model.updateRows(List.of(row(1, "main", 100)));
+
+        assertSame(newer, model.rows.get(0).getPipeline());
+        assertTrue(events.isEmpty());
+    }
+
+    private List<Long> ids() {
+        return model.rows.stream().map(x -> x.getPipeline().getId()).toList();
+    }
+
+    private PipelineRow row(long id, String branch, long creationTime) {
+        return row(id, branch, creationTime, PipelineStatus.RUNNING);
+    }
+
+    private PipelineRow row(long id, String branch, long creationTime, PipelineStatus status) {
+        return new PipelineRow(pipeline(id, branch, creationTime, status), getProject());
+    }
+
+    private static PipelineJobStatus pipeline(long id, String branch, long creationTime, PipelineStatus status) {
+        return TestPipelines.pipeline(id).branch(branch).created(creationTime).updated(creationTime).status(status).build();
+    }
+}